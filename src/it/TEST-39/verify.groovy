@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2016 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+buildLogFile = new File(basedir, 'build.log');
+assert buildLogFile.exists();
+assert buildLogFile.isFile();
+
+content = buildLogFile.text;
+assert content.count('Compiling 1 proto file(s)') == 2;
+assert content.count('Skipping compilation because sources and protoc configuration are unchanged.') == 1;
+
+manifestDirectory = new File(basedir, 'target/protoc-manifests');
+assert manifestDirectory.exists();
+assert manifestDirectory.isDirectory();
+
+generatedJavaFile = new File(basedir, 'target/generated-sources/protobuf/java/test/TestProtos.java');
+assert generatedJavaFile.exists();
+assert generatedJavaFile.isFile();
+
+return true;
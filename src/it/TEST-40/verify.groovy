@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2016 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+importsDirectory = new File(basedir, 'target/protoc-dependencies/imports');
+assert importsDirectory.exists();
+assert importsDirectory.isDirectory();
+
+importedProtoFile = new File(importsDirectory, 'google/protobuf/timestamp.proto');
+assert importedProtoFile.exists();
+assert importedProtoFile.isFile();
+
+// protobuf-java bundles further well-known types, which are not imported
+extractedFiles = []
+importsDirectory.eachFileRecurse(groovy.io.FileType.FILES) { extractedFiles << it }
+assert extractedFiles.size() == 1;
+
+generatedJavaFile = new File(basedir, 'target/generated-sources/protobuf/java/test/TestProtos.java');
+assert generatedJavaFile.exists();
+assert generatedJavaFile.isFile();
+
+return true;
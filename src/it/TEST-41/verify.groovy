@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+generatedJavaFile = new File(basedir, 'project2/target/generated-sources/protobuf/java/it/project2/messages/TestProtos.java')
+assert generatedJavaFile.exists()
+assert generatedJavaFile.isFile()
+
+// the upstream definitions come from the descriptor set, so the upstream jar is not extracted
+dependenciesDirectory = new File(basedir, 'project2/target/protoc-dependencies')
+extractedFiles = []
+if (dependenciesDirectory.exists()) {
+    dependenciesDirectory.eachFileRecurse(groovy.io.FileType.FILES) { extractedFiles << it.name }
+}
+assert !extractedFiles.contains('test1.proto')
+
+return true
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+def assertGeneratedFiles(directory) {
+    outputDirectory = new File(basedir, directory)
+    assert outputDirectory.isDirectory()
+    assert outputDirectory.listFiles().length > 0
+}
+
+assertGeneratedFiles('target/generated-sources/protobuf/java')
+assertGeneratedFiles('target/generated-sources/protobuf/cpp')
+assertGeneratedFiles('target/generated-sources/protobuf/python')
+
+generatedDescriptorFile = new File(basedir, 'target/generated-resources/protobuf/descriptor-sets/test-43-1.0.0.pb')
+assert generatedDescriptorFile.isFile()
+
+// the java sources are added to the compile source roots and compiled
+assert new File(basedir, 'target/classes').listFiles().length > 0
+
+buildLog = new File(basedir, 'build.log').text
+assert buildLog.count('Compiling 1 proto file(s) to') == 1
+
+return true
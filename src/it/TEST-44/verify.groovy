@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+outputDirectory = new File(basedir, 'target/generated-sources/protobuf/java')
+assert new File(outputDirectory, 'model/ItemOuterClass.java').isFile()
+assert new File(outputDirectory, 'api/List.java').isFile()
+assert !new File(outputDirectory, 'model/internal').exists()
+
+// the compiled definitions of both roots are packaged, with the excluded ones left out
+classesDirectory = new File(basedir, 'target/classes')
+assert new File(classesDirectory, 'model/item.proto').isFile()
+assert new File(classesDirectory, 'api/list.proto').isFile()
+assert !new File(classesDirectory, 'model/internal/secret.proto').exists()
+
+buildLog = new File(basedir, 'build.log').text
+assert buildLog.count('Compiling 2 proto file(s) to') == 1
+
+return true
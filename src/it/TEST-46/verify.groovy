@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+outputDirectory = new File(basedir, 'target/generated-sources/protobuf/java/incremental')
+assert new File(outputDirectory, 'LeafOuterClass.java').isFile()
+assert new File(outputDirectory, 'LeafOuterClass.java.pb.meta').isFile()
+assert new File(outputDirectory, 'OtherOuterClass.java.pb.meta').isFile()
+assert !new File(outputDirectory, 'RemovedOuterClass.java').exists()
+// not attributed to the removed definition, but deleted along with all previous outputs
+assert !new File(outputDirectory, 'RemovedOuterClass.java.pb.meta').exists()
+
+buildLog = new File(basedir, 'build.log').text
+assert buildLog.contains('Compiling 3 proto file(s) to')
+assert buildLog.contains('Incremental build: 2 changed or affected, 1 removed proto file(s)')
+assert buildLog.contains('Compiling 2 proto file(s) to')
+
+return true
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.util.zip.ZipFile
+
+// the definitions are only packaged into the protos artifact
+mainJar = new ZipFile(new File(basedir, 'project1/target/test-47-project1-1.0.0.jar'))
+assert mainJar.getEntry('it/project1/test1.proto') == null
+mainJar.close()
+protoJar = new ZipFile(new File(basedir, 'project1/target/test-47-project1-1.0.0-protos.jar'))
+assert protoJar.getEntry('it/project1/test1.proto') != null
+protoJar.close()
+
+// which is where the import of the dependent project was found
+generatedJavaFile = new File(basedir, 'project2/target/generated-sources/protobuf/java/it/project2/messages/TestProtos.java')
+assert generatedJavaFile.isFile()
+assert generatedJavaFile.text.contains('class TestMessage2')
+
+return true
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+indexFile = new File(basedir, 'project1/target/classes/META-INF/protobuf/index')
+assert indexFile.isFile()
+index = indexFile.text
+assert index.contains(' it/project1/indexed.proto')
+// the definition removed by the second build is gone, although the index was not cleaned
+assert !index.contains('removed.proto')
+// the definition packaged as a plain resource is not indexed
+assert !index.contains('unindexed.proto')
+
+generatedJavaFile = new File(basedir, 'project2/target/generated-sources/protobuf/java/it/project2/messages/ConsumerOuterClass.java')
+assert generatedJavaFile.isFile()
+
+return true
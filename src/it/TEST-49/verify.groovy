@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+assert new File(basedir, 'target/generated-test-sources/protobuf/java/fixture/ItemFixtureOuterClass.java').isFile()
+
+// the main compilation records its import roots for the test compilation
+mainProtoPathFile = new File(basedir, 'target/protoc-main-proto-path/compile-default')
+assert mainProtoPathFile.isFile()
+assert mainProtoPathFile.readLines().contains(new File(basedir, 'src/main/proto').absolutePath)
+
+// which are passed to protoc instead of the build output directory
+buildLog = new File(basedir, 'build.log').text
+assert buildLog.contains('[PROTOC]  ' + new File(basedir, 'src/main/proto').absolutePath)
+assert !buildLog.contains('[PROTOC]  ' + new File(basedir, 'target/classes').absolutePath)
+
+return true
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+assert new File(basedir, 'target/generated-sources/protobuf/java/test/TestProtos.java').isFile()
+
+generatedJavaFile = new File(basedir, 'target/generated-sources/protobuf/grpc/test/MyServiceGrpc.java')
+assert generatedJavaFile.isFile()
+assert generatedJavaFile.text.contains('class MyServiceStub')
+
+// both generators are run by a single protoc invocation, and their sources are compiled
+buildLog = new File(basedir, 'build.log').text
+assert buildLog.count('Compiling 1 proto file(s) to') == 1
+assert new File(basedir, 'target/classes/test/MyServiceGrpc.class').isFile()
+
+return true
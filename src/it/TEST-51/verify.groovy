@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+generatedJavaFile = new File(basedir, 'project2/target/generated-sources/protobuf/java/it/project2/messages/TestProtos.java')
+assert generatedJavaFile.isFile()
+
+// the import roots are recorded by the coordinates of their dependency, or by their path
+manifest = new Properties()
+new File(basedir, 'project2/target/protoc-manifests/compile-default.properties').withInputStream { manifest.load(it) }
+assert manifest.containsKey('proto-path:dev.cookiecode.its:test-51-project1:jar')
+assert manifest.containsKey('proto-path:src/main/shared')
+
+// the fingerprint of the additional import root is cached
+assert new File(basedir, 'project2/target/protoc-manifests/proto-path-fingerprints.properties').isFile()
+
+buildLog = new File(basedir, 'build.log').text
+assert buildLog.count('Compiling 1 proto file(s) to') == 3
+assert buildLog.count('Skipping compilation because sources and protoc configuration are unchanged.') == 1
+
+return true
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+// simulate a crashed build, and a build that is still extracting
+def store = new File(basedir, 'shared-store')
+def stale = new File(store, '.0123abcd-crashed')
+assert stale.mkdirs()
+new File(stale, 'partial.proto').text = 'syntax = "proto3";'
+assert stale.setLastModified(System.currentTimeMillis() - 2L * 24 * 60 * 60 * 1000)
+assert new File(store, '.4567abcd-running').mkdirs()
+
+return true;
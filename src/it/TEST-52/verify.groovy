@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def store = new File(basedir, 'shared-store')
+assert store.isDirectory()
+
+assert !new File(store, '.0123abcd-crashed').exists()
+assert new File(store, '.4567abcd-running').isDirectory()
+
+// protobuf-java and project1 contain proto files, the other dependencies do not
+def directories = store.listFiles().findAll { !it.name.startsWith('.') }
+assert directories.size() == 2
+assert directories.every { it.isDirectory() && it.list().length > 0 }
+assert directories.any { new File(it, 'it/project1/test1.proto').isFile() }
+assert directories.any { new File(it, 'google/protobuf/descriptor.proto').isFile() }
+
+['project2', 'project3'].each { project ->
+    def cacheFiles = []
+    new File(basedir, project + '/target').eachFileRecurse { file ->
+        if (file.name == '.extraction-cache.properties') {
+            cacheFiles << file
+        }
+    }
+    assert cacheFiles.size() == 1
+    def cache = new Properties()
+    cacheFiles[0].withInputStream { cache.load(it) }
+    def negative = cache.findAll { key, value -> key.contains('javax.annotation-api') }
+    assert negative.size() == 1
+    assert negative.values().every { it.split(',', 6)[2] == 'false' }
+    assert negative.values().every { !new File(it.split(',', 6)[5]).exists() }
+
+    def generatedJavaFile = new File(basedir,
+            project + '/target/generated-sources/protobuf/java/it/' + project + '/messages/TestProtos.java')
+    assert generatedJavaFile.isFile()
+    assert generatedJavaFile.text.contains('it.project1.messages.TestProtos.TestMessage1')
+}
+
+return true;
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def buildLog = new File(basedir, 'build.log').text
+
+assert buildLog =~ /(?m)^\[ERROR\] PROTOC: \S*it\/broken\.proto:22:5: "Missing" is not defined\.$/
+assert buildLog =~ /(?m)^\[WARNING\] PROTOC: \S*it\/unused\.proto:21:1: warning: Import it\/other\.proto is unused\.$/
+// the error is also reported on the source file it refers to
+assert buildLog =~ /(?m)^\[ERROR\] \S*it[\/\\]broken\.proto \[22:5\]: "Missing" is not defined\.$/
+assert buildLog.contains('protoc did not exit cleanly')
+
+return true;
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def buildLog = new File(basedir, 'build.log').text
+
+assert buildLog =~ /Reusing extracted proto files of \S*test-54-project1-1\.0\.0\.jar/
+
+def dependencyDirectory = new File(basedir, 'project2/target/protoc-dependencies')
+assert new File(dependencyDirectory, '.extraction-cache.properties').isFile()
+
+def extractedFiles = []
+dependencyDirectory.eachFileRecurse { file ->
+    if (file.path.replace('\\', '/').contains('it/project1/')) {
+        extractedFiles << file
+    }
+}
+assert extractedFiles.collect { it.name } == ['test1.proto']
+assert extractedFiles[0].text.contains('message Added')
+
+return true;
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def buildLog = new File(basedir, 'build.log').text
+
+// the import paths are logged in the order they are passed to protoc
+def importPaths = buildLog.readLines()
+        .dropWhile { !it.contains('[PROTOC] Protobuf import paths:') }
+        .drop(1)
+        .takeWhile { it.startsWith('[DEBUG] [PROTOC]  ') }
+def positions = ['test-55-project3', 'test-55-project1', 'test-55-project2'].collect { artifactId ->
+    importPaths.findIndexOf { it.contains(artifactId) }
+}
+assert positions.every { it >= 0 }
+assert positions == positions.sort(false)
+
+def generatedJavaFile = new File(basedir,
+        'project4/target/generated-sources/protobuf/java/it/project4/messages/Message4Protos.java')
+assert generatedJavaFile.isFile()
+
+return true;
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def buildLog = new File(basedir, 'build.log').text
+assert buildLog =~ /Not scanning excluded dependency dev\.cookiecode\.its:test-56-project2:jar:1\.0\.0/
+
+def extractedFiles = []
+new File(basedir, 'project3/target/protoc-dependencies').eachFileRecurse { file ->
+    if (file.isFile() && file.name.endsWith('.proto')) {
+        extractedFiles << file.path.replace('\\', '/')
+    }
+}
+assert extractedFiles.any { it.contains('/test-56-project1-1.0.0.jar') && it.endsWith('/it/project1/kept.proto') }
+assert !extractedFiles.any { it.endsWith('/dropped.proto') }
+assert !extractedFiles.any { it.contains('test-56-project2') || it.endsWith('/excluded.proto') }
+// dependencies without a filter are extracted completely
+assert extractedFiles.any { it.endsWith('/google/protobuf/descriptor.proto') }
+
+def generatedJavaFile = new File(basedir,
+        'project3/target/generated-sources/protobuf/java/it/project3/messages/ConsumerProtos.java')
+assert generatedJavaFile.isFile()
+
+return true;
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def steps = new File(basedir, 'build.log').text.split(/\[INFO\] Scanning for projects\.\.\./)
+def buildLog = steps[2]
+def rebuildLog = steps[3]
+
+assert !buildLog.contains('Reusing merged proto path')
+assert buildLog =~ /Merged 3 dependency proto path element\(s\): 1 duplicate, 1 conflicting file\(s\)/
+assert buildLog =~ /\[WARNING\] Conflicting definitions of it\/common\/conflict\.proto in /
+
+// protoc only receives the source root and the merged directory
+def importPaths = buildLog.readLines()
+        .dropWhile { !it.contains('[PROTOC] Protobuf import paths:') }
+        .drop(1)
+        .takeWhile { it.startsWith('[DEBUG] [PROTOC]  ') }
+assert importPaths.size() == 2
+def mergedDirectory = new File(importPaths[1].substring('[DEBUG] [PROTOC]  '.length()))
+assert mergedDirectory.path.replace('\\', '/').contains('/protoc-dependencies/merged')
+
+assert new File(mergedDirectory, 'it/common/shared.proto').isFile()
+assert new File(mergedDirectory, 'google/protobuf/descriptor.proto').isFile()
+// the first definition in classpath order is kept
+def conflict = new File(mergedDirectory, 'it/common/conflict.proto').text
+assert conflict.contains('from_project1')
+
+// the unchanged roots are not merged again, but the outcome of the merge is still reported
+assert rebuildLog.contains('Reusing merged proto path')
+assert rebuildLog =~ /Merged 3 dependency proto path element\(s\): 1 duplicate, 1 conflicting file\(s\)/
+assert new File(mergedDirectory, 'it/common/conflict.proto').text.contains('from_project1')
+
+def generatedJavaFile = new File(basedir,
+        'project3/target/generated-sources/protobuf/java/it/project3/messages/ConsumerProtos.java')
+assert generatedJavaFile.isFile()
+
+return true;
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def invocations = new File(basedir, 'build.log').text.split(/\[INFO\] Scanning for projects\.\.\./)
+assert invocations.length == 4
+
+// compile extracts protobuf-java, test-compile then reuses it within the same build
+def testCompile = invocations[1].split(/Configuring mojo execution '\S*another-protobuf-maven-plugin:[^:]+:test-compile/)[1]
+assert testCompile =~ /Reusing extracted proto files of \S*protobuf-java-\S*\.jar/
+
+// the test-scoped jars checked by the last test-compile are still known after a compile
+def lastTestCompile = invocations[3].split(/Configuring mojo execution '\S*another-protobuf-maven-plugin:[^:]+:test-compile/)[1]
+assert lastTestCompile =~ /Reusing extracted proto files of \S*junit-4\.12\.jar/
+
+assert new File(basedir, 'target/generated-sources/protobuf/java/it/messages/MainOuterClass.java').isFile()
+assert new File(basedir, 'target/generated-test-sources/protobuf/java/it/test/messages/TestOuterClass.java').isFile()
+
+return true;
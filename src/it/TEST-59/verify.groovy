@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def buildLog = new File(basedir, 'build.log').text
+
+assert buildLog.contains('Pruned proto path: 2 of 3 import root(s) provide imported files')
+assert buildLog =~ /(?m)^\[DEBUG\]  \+ \S*[\/\\]src[\/\\]main[\/\\]imports$/
+assert buildLog =~ /(?m)^\[DEBUG\]  - \S*[\/\\]src[\/\\]main[\/\\]unused$/
+
+def importPaths = buildLog.readLines()
+        .dropWhile { !it.contains('[PROTOC] Protobuf import paths:') }
+        .drop(1)
+        .takeWhile { it.startsWith('[DEBUG] [PROTOC]  ') }
+assert importPaths.size() == 3
+assert importPaths.any { it.replace('\\', '/').endsWith('/src/main/imports') }
+assert !importPaths.any { it.replace('\\', '/').endsWith('/src/main/unused') }
+
+assert new File(basedir, 'target/generated-sources/protobuf/java/it/messages/MainOuterClass.java').isFile()
+
+return true;
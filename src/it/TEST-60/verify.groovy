@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import org.codehaus.plexus.util.FileUtils
+
+def buildLog = new File(basedir, 'build.log').text
+def sourceRoot = new File(basedir, 'src/main/proto')
+
+def compiledFiles = buildLog.readLines()
+        .dropWhile { !it.contains('[PROTOC] Protobuf descriptors:') }
+        .drop(1)
+        .takeWhile { it.startsWith('[DEBUG] [PROTOC]  ') }
+        .collect { new File(it.substring('[DEBUG] [PROTOC]  '.length())).canonicalFile }
+        .sort()
+
+def expectedFiles = FileUtils.getFiles(sourceRoot, '**/*.proto', '**/excluded/**,**/skip_*.proto')
+        .collect { it.canonicalFile }
+        .sort()
+assert compiledFiles == expectedFiles
+
+def sourceRootPath = sourceRoot.canonicalFile.toPath()
+def names = compiledFiles.collect { sourceRootPath.relativize(it.toPath()).toString().replace('\\', '/') }
+assert names.sort() == ['top.proto', 'x/nested.proto', 'x/y/deep.proto', 'z/kept.proto']
+
+return true;
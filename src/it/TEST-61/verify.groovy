@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def outputDirectory = new File(basedir, 'target/generated-sources/protobuf/java')
+assert new File(outputDirectory, 'it/FirstOuterClass.java').isFile()
+assert new File(outputDirectory, 'it2/SecondOuterClass.java').isFile()
+assert new File(outputDirectory, 'it3/ThirdOuterClass.java').isFile()
+
+def classesDirectory = new File(basedir, 'target/classes')
+assert new File(classesDirectory, 'it3/ThirdOuterClass$Third.class').isFile()
+
+return true;
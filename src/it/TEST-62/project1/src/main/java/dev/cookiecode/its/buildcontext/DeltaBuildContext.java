@@ -0,0 +1,161 @@
+package dev.cookiecode.its.buildcontext;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.Scanner;
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An incremental build context that reports the files listed, separated by semicolons, in the {@code it.changed}
+ * and {@code it.deleted} system properties as changed and deleted. It logs the refreshed files and the messages
+ * added to files, so that the behavior of the plugin in an IDE can be verified from the build log.
+ */
+public class DeltaBuildContext implements BuildContext {
+
+    private final Map<String, Object> values = new HashMap<>();
+
+    @Override
+    public boolean hasDelta(final String relativePath) {
+        return true;
+    }
+
+    @Override
+    public boolean hasDelta(final File file) {
+        return true;
+    }
+
+    @Override
+    public boolean hasDelta(final List relativePaths) {
+        return true;
+    }
+
+    @Override
+    public void refresh(final File file) {
+        System.out.println("[build-context] refresh " + file);
+    }
+
+    @Override
+    public OutputStream newFileOutputStream(final File file) throws IOException {
+        return new FileOutputStream(file);
+    }
+
+    @Override
+    public Scanner newScanner(final File basedir) {
+        return new DeltaScanner(basedir, System.getProperty("it.changed", ""));
+    }
+
+    @Override
+    public Scanner newDeleteScanner(final File basedir) {
+        return new DeltaScanner(basedir, System.getProperty("it.deleted", ""));
+    }
+
+    @Override
+    public Scanner newScanner(final File basedir, final boolean ignoreDelta) {
+        if (!ignoreDelta) {
+            return newScanner(basedir);
+        }
+        final DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(basedir);
+        return scanner;
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return true;
+    }
+
+    @Override
+    public void setValue(final String key, final Object value) {
+        values.put(key, value);
+    }
+
+    @Override
+    public Object getValue(final String key) {
+        return values.get(key);
+    }
+
+    @Override
+    public void addWarning(final File file, final int line, final int column, final String message,
+                           final Throwable cause) {
+        addMessage(file, line, column, message, SEVERITY_WARNING, cause);
+    }
+
+    @Override
+    public void addError(final File file, final int line, final int column, final String message,
+                         final Throwable cause) {
+        addMessage(file, line, column, message, SEVERITY_ERROR, cause);
+    }
+
+    @Override
+    public void addMessage(final File file, final int line, final int column, final String message,
+                           final int severity, final Throwable cause) {
+        System.out.println("[build-context] message " + file + " [" + line + ":" + column + "]");
+    }
+
+    @Override
+    public void removeMessages(final File file) {
+    }
+
+    @Override
+    public boolean isUptodate(final File target, final File source) {
+        return false;
+    }
+
+    /**
+     * A scanner that only reports the listed files, among those matching its patterns.
+     */
+    private static final class DeltaScanner extends DirectoryScanner {
+
+        private final List<String> delta;
+
+        private String[] includedFiles = new String[0];
+
+        DeltaScanner(final File basedir, final String delta) {
+            setBasedir(basedir);
+            this.delta = delta.isEmpty() ? new ArrayList<>() : Arrays.asList(delta.split(";"));
+        }
+
+        @Override
+        public void scan() {
+            setupMatchPatterns();
+            final List<String> files = new ArrayList<>();
+            for (final String name : delta) {
+                final String path = name.replace('/', File.separatorChar);
+                if (isIncluded(path) && !isExcluded(path)) {
+                    files.add(path);
+                }
+            }
+            includedFiles = files.toArray(new String[0]);
+        }
+
+        @Override
+        public String[] getIncludedFiles() {
+            return includedFiles;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def invocations = new File(basedir, 'build.log').text.split(/\[INFO\] Scanning for projects\.\.\./)
+assert invocations.length == 5
+
+assert invocations[2].contains('Compiling 2 proto file(s) to')
+
+assert invocations[3].contains('Incremental build: 1 changed or affected, 0 removed proto file(s)')
+assert invocations[3].contains('Compiling 1 proto file(s) to')
+// the edited sources are refreshed by the resources plugin that copies them
+def refreshed = invocations[3].readLines().findAll {
+    it.startsWith('[build-context] refresh ') && it.contains('generated-sources')
+}
+assert refreshed.size() == 1
+assert refreshed[0].endsWith('FirstOuterClass.java')
+
+assert invocations[4].contains('Skipping compilation because build context has no changes.')
+
+def outputDirectory = new File(basedir, 'project2/target/generated-sources/protobuf/java/it/messages')
+assert new File(outputDirectory, 'FirstOuterClass.java').text.contains('getAdded()')
+// the second file has changed as well, but the build context did not report it
+assert !new File(outputDirectory, 'SecondOuterClass.java').text.contains('getAdded()')
+
+return true;
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+// changes the definitions once the watch goal has compiled them for the first time
+def sourceRoot = new File(basedir, 'src/main/proto')
+def generatedFile = new File(basedir, 'target/generated-sources/protobuf/java/it/messages/WatchedOuterClass.java')
+def header = new File(sourceRoot, 'it/watched.proto').readLines().takeWhile { it.startsWith('//') }.join('\n')
+
+Thread.start {
+    def deadline = System.currentTimeMillis() + 60000
+    while (!generatedFile.isFile() && System.currentTimeMillis() < deadline) {
+        sleep(200)
+    }
+    // leave time for the directories to be watched
+    sleep(3000)
+    new File(sourceRoot, 'it/watched.proto').text = header + '''
+
+syntax = "proto3";
+
+package it;
+
+option java_package = "it.messages";
+
+message Watched {
+    string added = 1;
+}
+'''
+    def directory = new File(sourceRoot, 'it/added')
+    directory.mkdirs()
+    new File(directory, 'added.proto').text = header + '''
+
+syntax = "proto3";
+
+package it.added;
+
+option java_package = "it.added.messages";
+
+message Added {
+}
+'''
+}
+
+return true;
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def buildLog = new File(basedir, 'build.log').text
+
+assert buildLog =~ /Watching \d+ director\(y\/ies\) for changes/
+assert buildLog.count('Compilation finished in') >= 2
+assert buildLog.contains('Incremental build: ')
+assert buildLog.contains('Stopped watching after 20000 ms')
+
+def outputDirectory = new File(basedir, 'target/generated-sources/protobuf/java')
+assert new File(outputDirectory, 'it/messages/WatchedOuterClass.java').text.contains('getAdded()')
+assert new File(outputDirectory, 'it/added/messages/AddedOuterClass.java').isFile()
+
+return true;
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def invocations = new File(basedir, 'build.log').text.split(/\[INFO\] Scanning for projects\.\.\./)
+assert invocations.length == 5
+
+assert invocations[1].contains('[explain]   there is no build manifest of a previous successful run')
+
+assert invocations[2].contains('[explain] Inputs are unchanged since the last successful execution')
+
+assert invocations[3].contains('[explain] Compiling because 2 input(s) differ from the last successful execution:')
+assert invocations[3] =~ /\[explain\]   source \S*explained\.proto changed/
+assert invocations[3].contains('[explain]   protoc command line changed:')
+assert invocations[3] =~ /\[explain\]     \+ --java_out=lite:\S+/
+assert invocations[3].contains('[explain] Compilation is never skipped, as neither checkStaleness '
+        + 'nor incrementalCompilation is enabled')
+
+assert invocations[4] =~ /\[explain\]   generated file \S*ExplainedOuterClass\.java is missing/
+
+return true;
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def buildLog = new File(basedir, 'build.log').text
+assert buildLog.contains('Compiling in 3 shard(s) with 1 generator invocation(s), '
+        + 'running up to 3 protoc process(es) at the same time')
+
+def outputDirectory = new File(basedir, 'target/generated-resources/protobuf/descriptor-sets')
+assert outputDirectory.list() as List == ['all.pb']
+
+// reads the names of the files of a FileDescriptorSet, without depending on the protobuf runtime
+def bytes = new File(outputDirectory, 'all.pb').bytes
+def position = 0
+def readVarint = {
+    long value = 0
+    int shift = 0
+    while (true) {
+        int b = bytes[position++] & 0xff
+        value |= (long) (b & 0x7f) << shift
+        if ((b & 0x80) == 0) {
+            return value
+        }
+        shift += 7
+    }
+}
+def names = []
+while (position < bytes.length) {
+    assert readVarint() == ((1 << 3) | 2)
+    def end = (int) readVarint() + position
+    // the name is the first field of a FileDescriptorProto
+    assert readVarint() == ((1 << 3) | 2)
+    def length = (int) readVarint()
+    names << new String(bytes, position, length, 'UTF-8')
+    position = end
+}
+
+assert names.sort(false) == ['google/protobuf/timestamp.proto', 'it/a/first.proto', 'it/a/second.proto',
+                             'it/b/third.proto', 'it/c/fourth.proto']
+// imports precede the files importing them
+assert names.indexOf('it/a/second.proto') < names.indexOf('it/a/first.proto')
+assert names.indexOf('google/protobuf/timestamp.proto') < names.indexOf('it/a/first.proto')
+assert names.indexOf('google/protobuf/timestamp.proto') < names.indexOf('it/b/third.proto')
+
+return true;
@@ -20,9 +20,12 @@ import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugins.annotations.Parameter;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 
 /**
  * An abstract base mojo configuration for using {@code protoc} compiler with the main sources.
@@ -40,17 +43,76 @@ public abstract class AbstractProtocCompileMojo extends AbstractProtocMojo {
     )
     private File protoSourceRoot;
 
+    /**
+     * If set to {@code true}, the {@code .proto} definitions are also packaged into a small separate
+     * artifact, which is attached to the build with the {@link #protoArtifactClassifier} classifier.
+     * Downstream projects enabling {@code preferProtoArtifacts} read this artifact instead of the main one,
+     * so they do not have to open large jars full of classes to find a few definitions.
+     *
+     * <p>This can be combined with {@link #attachProtoSources} set to {@code false}, to keep
+     * the definitions out of the main artifact altogether.</p>
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false,
+            property = "protoc.attachProtoArtifact",
+            defaultValue = "false"
+    )
+    private boolean attachProtoArtifact;
+
+    @Override
+    protected void doAttachFiles() {
+        super.doAttachFiles();
+        if (attachProtoArtifact) {
+            doAttachProtoArtifact();
+        }
+    }
+
+    /**
+     * Packages the {@code .proto} definitions into a jar and attaches it to the build.
+     * The artifact is only packaged by the first execution that attaches it within a build.
+     */
+    protected void doAttachProtoArtifact() {
+        for (final Artifact attachedArtifact : project.getAttachedArtifacts()) {
+            if (getProtoArtifactClassifier().equals(attachedArtifact.getClassifier())) {
+                return;
+            }
+        }
+        final File protoArtifactFile = new File(project.getBuild().getDirectory(),
+                project.getBuild().getFinalName() + "-" + getProtoArtifactClassifier() + ".jar");
+        packageProtoSources(protoArtifactFile);
+        projectHelper.attachArtifact(project, "jar", getProtoArtifactClassifier(), protoArtifactFile);
+    }
+
+    /**
+     * Records the import roots of the main definitions, for the test goals to import them from.
+     */
+    @Override
+    protected void recordProtoPath(final List<File> protoSourceRoots, final List<File> derivedProtoPathElements) {
+        final List<File> protoPathElements = new ArrayList<>(protoSourceRoots);
+        protoPathElements.addAll(derivedProtoPathElements);
+        MainProtoPath.write(new File(project.getBuild().getDirectory(), MainProtoPath.DIRECTORY),
+                getExecutionKey(), protoPathElements);
+    }
+
     @Override
     protected void doAttachProtoSources() {
-        projectHelper.addResource(project, getProtoSourceRoot().getAbsolutePath(),
-                asList(getIncludes()), asList(getExcludes()));
+        for (final ProtoSourceRoot protoSourceRoot : getProtoSourceRoots()) {
+            projectHelper.addResource(project, protoSourceRoot.getDirectory().getAbsolutePath(),
+                    asList(getIncludes(protoSourceRoot)), asList(getExcludes(protoSourceRoot)));
+        }
+        final File indexDirectory = new File(project.getBuild().getDirectory(), "protoc-index");
+        writeProtoIndex(indexDirectory);
+        projectHelper.addResource(project, indexDirectory.getAbsolutePath(),
+                singletonList(ProtoIndex.PATH), emptyList());
     }
 
     @Override
     protected void doAttachGeneratedFiles() {
         final File outputDirectory = getOutputDirectory();
         project.addCompileSourceRoot(outputDirectory.getAbsolutePath());
-        buildContext.refresh(outputDirectory);
+        refreshGeneratedFiles(outputDirectory);
     }
 
     @Override
@@ -58,6 +120,19 @@ public abstract class AbstractProtocCompileMojo extends AbstractProtocMojo {
         return project.getCompileArtifacts();
     }
 
+    @Override
+    protected List<Artifact> getDependencyDescriptorSetArtifacts() {
+        final List<Artifact> descriptorSetArtifacts = new ArrayList<>();
+        for (final Artifact artifact : project.getArtifacts()) {
+            if (isDescriptorSet(artifact) && (Artifact.SCOPE_COMPILE.equals(artifact.getScope())
+                    || Artifact.SCOPE_PROVIDED.equals(artifact.getScope())
+                    || Artifact.SCOPE_SYSTEM.equals(artifact.getScope()))) {
+                descriptorSetArtifacts.add(artifact);
+            }
+        }
+        return descriptorSetArtifacts;
+    }
+
     @Override
     protected File getProtoSourceRoot() {
         return protoSourceRoot;
@@ -28,6 +28,7 @@ import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException
 import org.apache.maven.artifact.versioning.VersionRange;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -40,34 +41,48 @@ import org.apache.maven.toolchain.ToolchainManager;
 import org.apache.maven.toolchain.java.DefaultJavaToolChain;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.Os;
+import org.codehaus.plexus.util.Scanner;
 import org.codehaus.plexus.util.SelectorUtils;
-import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.io.RawInputStreamFacade;
 import org.sonatype.plexus.build.incremental.BuildContext;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import static java.lang.Math.max;
 import static java.lang.String.format;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
+import static java.util.Collections.emptySet;
 import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
 import static org.codehaus.plexus.util.FileUtils.cleanDirectory;
 import static org.codehaus.plexus.util.FileUtils.copyStreamToFile;
-import static org.codehaus.plexus.util.FileUtils.getDefaultExcludesAsString;
-import static org.codehaus.plexus.util.FileUtils.getFileNames;
-import static org.codehaus.plexus.util.FileUtils.getFiles;
 import static org.codehaus.plexus.util.StringUtils.join;
 
 /**
@@ -81,6 +96,38 @@ abstract class AbstractProtocMojo extends AbstractMojo {
 
     private static final String DEFAULT_INCLUDES = "**/*.proto*";
 
+    /**
+     * Subdirectory of the temporary proto file directory for files extracted by {@link #extractImportedProtosOnly}.
+     */
+    private static final String IMPORTED_PROTOS_DIRECTORY = "imports";
+
+    /**
+     * Subdirectory of the temporary proto file directory for files merged by {@link #mergeDependencyProtoPath}.
+     */
+    private static final String MERGED_PROTOS_DIRECTORY = "merged";
+
+    /**
+     * Subdirectory of an index directory holding the part of the {@link ProtoIndex} written by each execution.
+     */
+    private static final String EXECUTION_INDEX_DIRECTORY = "executions";
+
+    /**
+     * Name of the file in the manifest directory caching the fingerprints of import roots
+     * that are not covered by the extraction cache.
+     */
+    private static final String PROTO_PATH_FINGERPRINTS_FILE_NAME = "proto-path-fingerprints.properties";
+
+    /**
+     * Name recorded in the extraction cache, in place of a shared store directory, for jars without proto files.
+     * No such directory is ever created.
+     */
+    private static final String NO_PROTOS_SHARED_DIRECTORY = "none";
+
+    /**
+     * Age after which a temporary directory in the shared store is considered to be left over by a crashed build.
+     */
+    private static final long STALE_SHARED_TEMPORARY_DIRECTORY_AGE_MILLIS = 24L * 60 * 60 * 1000;
+
     /**
      * The current Maven project.
      */
@@ -95,6 +142,14 @@ abstract class AbstractProtocMojo extends AbstractMojo {
     @Parameter(defaultValue = "${session}", readonly = true)
     protected MavenSession session;
 
+    /**
+     * The current mojo execution, used to tell apart the build manifests of different executions.
+     *
+     * @since 2.2.0
+     */
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+    protected MojoExecution mojoExecution;
+
     /**
      * Build context that tracks changes to the source and target files.
      *
@@ -228,8 +283,12 @@ abstract class AbstractProtocMojo extends AbstractMojo {
     private File[] additionalProtoPathElements = {};
 
     /**
-     * Since {@code protoc} cannot access jars, proto files in dependencies are extracted to this location
-     * and deleted on exit. This directory is always cleaned during execution.
+     * Since {@code protoc} cannot access jars, proto files in dependencies are extracted to this location.
+     * Extracted files are kept between executions: a jar is only extracted again when its size or
+     * modification time changes, and the files extracted from jars that are no longer used by any execution
+     * are deleted. Executions of the same project that share this location, such as {@code compile} and
+     * {@code test-compile}, reuse each other's extracted files, so that only their extra dependencies
+     * need to be extracted.
      */
     @Parameter(
             required = true,
@@ -237,6 +296,187 @@ abstract class AbstractProtocMojo extends AbstractMojo {
     )
     private File temporaryProtoFileDirectory;
 
+    /**
+     * A directory where build manifests are stored. A build manifest records the hashes of the compiled
+     * {@code .proto} files, the identity of the {@code protoc} executable and the effective command line
+     * of the last successful execution, and is used to detect whether recompilation is needed.
+     *
+     * @see #checkStaleness
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = true,
+            defaultValue = "${project.build.directory}/protoc-manifests"
+    )
+    private File manifestDirectory;
+
+    /**
+     * Set this to {@code true} to extract from dependencies only the proto files that are imported by the
+     * compiled files, directly or transitively, instead of all proto files bundled in dependency jars.
+     * This saves a lot of I/O when dependencies bundle large sets of definitions of which only a few are used.
+     *
+     * <p>Imports are resolved against the proto source root, the dependencies and the additional proto path
+     * elements, in this order, and the build fails if an import cannot be resolved. Note that the
+     * {@code include} directory of a locally installed {@code protoc} is not searched, so well-known types
+     * have to be provided by a dependency, such as {@code com.google.protobuf:protobuf-java}.</p>
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false,
+            property = "protoc.extractImportedProtosOnly",
+            defaultValue = "false"
+    )
+    private boolean extractImportedProtosOnly;
+
+    /**
+     * A user-level directory where proto files extracted from dependency jars are shared between projects,
+     * for example {@code ${user.home}/.m2/protoc-cache}. Each jar is extracted only once per machine into
+     * a subdirectory named after the SHA-256 hash of its content, and {@code protoc} is pointed directly at
+     * these directories instead of copies in {@link #temporaryProtoFileDirectory}.
+     *
+     * <p>The store is safe to use from concurrent builds. Its content must not be modified, but the whole
+     * directory may be deleted at any time between builds. By default, the shared store is not used.</p>
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false,
+            property = "protoc.sharedProtoCacheDirectory"
+    )
+    private File sharedProtoCacheDirectory;
+
+    /**
+     * Set this to {@code true} to merge the proto files of all dependencies into a single import root,
+     * instead of passing one {@code --proto_path} per dependency to {@code protoc}. Files that are bundled
+     * in several dependencies with an identical content are only materialized once.
+     *
+     * <p>When dependencies bundle different files under the same path, the first one in classpath order
+     * is used, as {@code protoc} would, and a warning is logged for each conflicting copy.
+     * The dependencies are only merged again when any of their proto files has changed.</p>
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false,
+            property = "protoc.mergeDependencyProtoPath",
+            defaultValue = "false"
+    )
+    private boolean mergeDependencyProtoPath;
+
+    /**
+     * Set this to {@code true} to pass to {@code protoc} only those dependency directories and additional
+     * proto path elements that provide files imported by the compiled files, directly or transitively.
+     * Since {@code protoc} searches every import root for every import, this speeds up the compilation
+     * of projects with many dependencies, and keeps the command line short.
+     *
+     * <p>Imports are resolved in proto path order, as {@code protoc} does, so the result of the
+     * compilation does not change. The pruned proto path is logged at debug level.</p>
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false,
+            property = "protoc.pruneProtoPath",
+            defaultValue = "false"
+    )
+    private boolean pruneProtoPath;
+
+    /**
+     * A list of patterns of dependency artifacts to scan for proto files, in the form
+     * {@code groupId:artifactId[:type[:classifier[:scope]]]}. Each segment may contain {@code *} wildcards,
+     * and omitted segments match anything. When not specified, all dependencies are scanned.
+     * Filtering happens before any jar is opened, so that dependencies without proto files cost nothing:
+     * <code><br/>
+     * &lt;dependencyIncludes&gt;<br/>
+     * &nbsp;&lt;dependencyInclude&gt;com.google.api.grpc:*&lt;/dependencyInclude&gt;<br/>
+     * &nbsp;&lt;dependencyInclude&gt;com.google.protobuf:protobuf-java&lt;/dependencyInclude&gt;<br/>
+     * &lt;/dependencyIncludes&gt;<br/>
+     * </code>
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false
+    )
+    private String[] dependencyIncludes = {};
+
+    /**
+     * A list of patterns of dependency artifacts not to scan for proto files, in the same form as
+     * {@link #dependencyIncludes}, e.g. {@code org.springframework*:*} or {@code io.netty:*}.
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false
+    )
+    private String[] dependencyExcludes = {};
+
+    /**
+     * The classifier of artifacts that contain only the {@code .proto} definitions of a project.
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = true,
+            defaultValue = "protos"
+    )
+    private String protoArtifactClassifier;
+
+    /**
+     * If set to {@code true}, proto files of a dependency are taken from the artifact with the
+     * {@link #protoArtifactClassifier} classifier instead of the dependency itself, when such an artifact
+     * can be resolved with the same coordinates. These artifacts only contain the definitions, so
+     * they are much cheaper to scan than the main artifacts.
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false,
+            property = "protoc.preferProtoArtifacts",
+            defaultValue = "false"
+    )
+    private boolean preferProtoArtifacts;
+
+    /**
+     * Set this to {@code true} to resolve imports from the binary descriptor sets of {@code pb} dependencies,
+     * as attached by the {@code compile-descriptor-set} goal of upstream projects, using the
+     * {@code --descriptor_set_in} option of {@code protoc}. Upstream definitions are then neither extracted
+     * nor parsed again, and the jars of the projects that provide a descriptor set are not scanned for proto
+     * files. This requires {@code protoc} 3.1.0 or newer.
+     *
+     * <p>Descriptor sets are only searched for imports that are not found on the proto path, and need
+     * to be built with {@code includeImports} set to {@code true}, so that they are self-contained.
+     * Resolving {@code pb} dependencies requires the plugin to be declared with extensions enabled.</p>
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false,
+            property = "protoc.useDependencyDescriptorSets",
+            defaultValue = "false"
+    )
+    private boolean useDependencyDescriptorSets;
+
+    /**
+     * Restricts the proto files extracted from dependency jars. For each jar, the first filter whose
+     * {@code artifact} pattern matches applies; jars without a matching filter are extracted completely:
+     * <code><br/>
+     * &lt;dependencyProtoFilters&gt;<br/>
+     * &nbsp;&lt;dependencyProtoFilter&gt;<br/>
+     * &nbsp;&nbsp;&lt;artifact&gt;com.google.api.grpc:proto-google-common-protos&lt;/artifact&gt;<br/>
+     * &nbsp;&nbsp;&lt;includes&gt;&lt;include&gt;google/api/**&lt;/include&gt;&lt;/includes&gt;<br/>
+     * &nbsp;&lt;/dependencyProtoFilter&gt;<br/>
+     * &lt;/dependencyProtoFilters&gt;<br/>
+     * </code>
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false
+    )
+    private List<DependencyProtoFilter> dependencyProtoFilters;
+
     /**
      * Set this to {@code false} to disable hashing of dependent jar paths.
      * <p/>
@@ -279,6 +519,29 @@ abstract class AbstractProtocMojo extends AbstractMojo {
     )
     private String[] excludes = {};
 
+    /**
+     * Several source directories to compile in a single {@code protoc} run, instead of the single
+     * proto source root of the goal. Each of them is an import root of the compilation, and may restrict
+     * the compiled definitions with its own includes and excludes, which default to {@link #includes}
+     * and {@link #excludes}:
+     * <code><br/>
+     * &lt;protoSourceRoots&gt;<br/>
+     * &nbsp;&lt;protoSourceRoot&gt;<br/>
+     * &nbsp;&nbsp;&lt;directory&gt;src/main/proto-api&lt;/directory&gt;<br/>
+     * &nbsp;&nbsp;&lt;excludes&gt;&lt;exclude&gt;internal/**&lt;/exclude&gt;&lt;/excludes&gt;<br/>
+     * &nbsp;&lt;/protoSourceRoot&gt;<br/>
+     * &lt;/protoSourceRoots&gt;<br/>
+     * </code>
+     * Dependency definitions are extracted, and the {@code protoc} executable and plugins are set up,
+     * only once for all of them, whereas a separate execution per directory would do that again each time.
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false
+    )
+    private List<ProtoSourceRoot> protoSourceRoots;
+
     /**
      * If set to {@code true}, then the specified protobuf source files from this project will be attached
      * as resources to the build, for subsequent inclusion into the final artifact.
@@ -288,6 +551,13 @@ abstract class AbstractProtocMojo extends AbstractMojo {
      * <p>If distribution of {@code .proto} source files is undesirable for security reasons
      * or because of other considerations, then this parameter should be set to {@code false}.</p>
      *
+     * <p>Along with the sources, an index listing their names and content hashes is attached as
+     * {@code META-INF/protobuf/index}. When a downstream build of this plugin extracts the artifact again,
+     * indexed files whose hashes match the previously extracted copies are not rewritten.
+     * The entries of the artifact are still enumerated, so that proto files packaged by other means
+     * than this parameter are extracted as well; the index saves writing unchanged files,
+     * not reading the artifact's directory.</p>
+     *
      * @since 0.4.1
      */
     @Parameter(
@@ -326,10 +596,10 @@ abstract class AbstractProtocMojo extends AbstractMojo {
      * Sets the granularity in milliseconds of the last modification date
      * for testing whether source protobuf definitions need recompilation.
      *
-     * <p>This parameter is only used when {@link #checkStaleness} parameter is set to {@code true}.
-     *
-     * <p>If the project is built on NFS it's recommended to set this parameter to {@code 10000}.
+     * @deprecated Ignored since 2.2.0: {@link #checkStaleness} compares content hashes
+     * recorded in a build manifest instead of modification dates.
      */
+    @Deprecated
     @Parameter(
             required = false,
             defaultValue = "0"
@@ -338,10 +608,13 @@ abstract class AbstractProtocMojo extends AbstractMojo {
 
     /**
      * Normally {@code protoc} is invoked on every execution of the plugin.
-     * Setting this parameter to {@code true} will enable checking
-     * timestamps of source protobuf definitions vs. generated sources.
+     * Setting this parameter to {@code true} will skip the invocation when the content of the source
+     * protobuf definitions, the {@code protoc} executable, the java plugin definitions and the effective
+     * command line options are all unchanged since the last successful execution,
+     * and all previously generated files still exist.
      *
-     * @see #staleMillis
+     * <p>These inputs are recorded in a build manifest in {@link #manifestDirectory}.
+     * When {@code protoc} is taken from the {@code PATH}, only its name is recorded.</p>
      */
     @Parameter(
             required = false,
@@ -349,6 +622,83 @@ abstract class AbstractProtocMojo extends AbstractMojo {
     )
     private boolean checkStaleness;
 
+    /**
+     * When {@code true}, only the {@code .proto} files that have changed since the last successful execution,
+     * and the files that import them (directly or transitively), are compiled. Generated files of changed or
+     * removed definitions are deleted before compilation. Unchanged definitions are not passed to {@code protoc},
+     * so their generated files are left untouched.
+     *
+     * <p>Generated files are attributed to their source definitions using the {@code source:} reference that
+     * generators put into their headers. Files without such a reference are attributed to all files compiled
+     * together with them; if these are not known, a change results in a full recompilation, which deletes all
+     * previously generated files first. Any change in the {@code protoc} configuration or dependencies results in a full
+     * recompilation. This setting has no effect on goals that produce a single output from all definitions,
+     * such as descriptor sets.</p>
+     *
+     * <p>This implies {@link #checkStaleness}.</p>
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false,
+            property = "protoc.incremental",
+            defaultValue = "false"
+    )
+    private boolean incrementalCompilation;
+
+    /**
+     * When {@code true}, the plugin reports which inputs have changed since the last successful execution
+     * whenever {@code protoc} is invoked: compiled definitions, definitions on the proto path, descriptor sets,
+     * the {@code protoc} executable, plugin definitions, command line options, or missing generated files.
+     * Meant to be enabled from the command line with {@code -Dprotoc.explain} when investigating why
+     * a build does not skip compilation.
+     *
+     * <p>A build manifest is written even if {@link #checkStaleness} is disabled, so that the report also
+     * tells whether compilation could have been skipped.</p>
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false,
+            property = "protoc.explain",
+            defaultValue = "false"
+    )
+    private boolean explain;
+
+    /**
+     * The maximum number of {@code protoc} processes to run at the same time. When greater than {@code 1},
+     * the compiled files are split into shards of files that do not import each other across shards,
+     * and each shard is compiled by a separate process. Descriptor sets written by the shards are merged
+     * into a single file. If any shard fails, the remaining shards are cancelled.
+     *
+     * <p>Only enable this for generators that produce output per compiled file, as all built-in
+     * generators do; a plugin that produces a single output from all compiled files would only see
+     * the files of one shard.</p>
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false,
+            property = "protoc.parallelism",
+            defaultValue = "1"
+    )
+    private int protocParallelism;
+
+    /**
+     * If set to {@code true}, the built-in Java generator and each of the {@link #protocPlugins} run in
+     * a separate {@code protoc} process, and these processes run at the same time, so that the generators
+     * do not wait for each other, nor java plugins for each other's JVM startup. The number of processes
+     * running at the same time is limited by {@link #protocParallelism} if it is greater than {@code 1}.
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false,
+            property = "protoc.splitGenerators",
+            defaultValue = "false"
+    )
+    private boolean splitGenerators;
+
     /**
      * When {@code true}, skip the execution.
      *
@@ -393,9 +743,9 @@ abstract class AbstractProtocMojo extends AbstractMojo {
 
     /**
      * When {@code true}, the .proto files to be compiled will be sorted before providing their
-     * paths to the protoc compiler. Otherwise, the order depends on the order in which the
-     * files are returned from the file system, which is nondeterministic and differs between
-     * file systems (and thus between Windows and macOS/Linux, for example).
+     * paths to the protoc compiler. Otherwise, the files are passed in the natural order of
+     * their paths, which depends on the platform's rules for comparing paths (and thus differs
+     * between Windows and macOS/Linux, for example).
      * <p>
      * This can for example be relevant when using documentation generation plugins for protoc.
      * <p>
@@ -425,6 +775,74 @@ abstract class AbstractProtocMojo extends AbstractMojo {
     )
     private boolean sortProtoFiles;
 
+    /**
+     * The {@link #dependencyProtoFilters} that apply to dependency files, populated while resolving them.
+     */
+    private final Map<File, DependencyProtoFilter> dependencyProtoFiltersByFile = new HashMap<>();
+
+    /**
+     * The coordinates of the dependencies, without their versions, by dependency file,
+     * populated while resolving them.
+     */
+    private final Map<File, String> dependencyKeysByFile = new HashMap<>();
+
+    /**
+     * The descriptor sets of dependencies used to resolve imports, see {@link #useDependencyDescriptorSets}.
+     */
+    private List<File> dependencyDescriptorSetFiles = emptyList();
+
+    /**
+     * The import roots that provide imported files, or {@code null} if the proto path is not pruned,
+     * see {@link #pruneProtoPath}.
+     */
+    private Set<File> usedProtoPathElements;
+
+    /**
+     * The proto files that the build context reports as changed since its last build, or {@code null} if
+     * the build context does not track changes, as in command line builds.
+     */
+    private Set<File> changedProtoFiles;
+
+    /**
+     * The generated files that have been written or deleted by this execution, or {@code null} if they are
+     * not known, in which case the whole output directory is refreshed.
+     */
+    private Set<File> changedOutputFiles;
+
+    /**
+     * The import roots extracted from dependencies by a previous execution, kept when
+     * {@link #isWarmStateRetained()} is {@code true}.
+     */
+    private List<File> retainedDerivedProtoPathElements;
+
+    /**
+     * Whether the {@code protoc} executable and plugins have been set up by a previous execution,
+     * which is only tracked when {@link #isWarmStateRetained()} is {@code true}.
+     */
+    private boolean toolsPrepared;
+
+    /**
+     * Fingerprints of the proto files of the import roots extracted from dependency jars,
+     * as recorded in the extraction cache, by import root.
+     */
+    private final Map<File, String> protoPathFingerprints = new ConcurrentHashMap<>();
+
+    /**
+     * The coordinates of the dependencies the import roots have been extracted from, or are the output
+     * directories of, by import root.
+     */
+    private final Map<File, String> protoPathElementDependencyKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the shared store has been swept for temporary directories left by crashed builds.
+     */
+    private final AtomicBoolean sharedProtoCacheSwept = new AtomicBoolean();
+
+    /**
+     * The import roots referred to by the fingerprint keys of the last build manifest, by key.
+     */
+    private final Map<String, File> fingerprintedProtoPathElements = new HashMap<>();
+
     /**
      * Executes the mojo.
      */
@@ -443,105 +861,132 @@ abstract class AbstractProtocMojo extends AbstractMojo {
             throw new MojoExecutionException(e.getMessage(), e);
         }
 
-        final File protoSourceRoot = getProtoSourceRoot();
-        if (protoSourceRoot.exists()) {
+        final List<File> protoSourceRootDirectories = getProtoSourceRootDirectories();
+        if (!protoSourceRootDirectories.isEmpty()) {
             try {
-                final List<File> protoFiles = findProtoFilesInDirectory(protoSourceRoot);
-                final File outputDirectory = getOutputDirectory();
-                final List<File> outputFiles = findGeneratedFilesInDirectory(getOutputDirectory());
+                final List<File> protoFiles = findProtoFilesInSourceRoots();
+                final List<File> outputDirectories = getOutputDirectories();
 
                 if (protoFiles.isEmpty()) {
                     getLog().info("No proto files to compile.");
                 } else if (!hasDelta(protoFiles)) {
                     getLog().info("Skipping compilation because build context has no changes.");
-                    doAttachFiles();
-                } else if (checkStaleness && checkFilesUpToDate(protoFiles, outputFiles)) {
-                    getLog().info("Skipping compilation because target directory newer than sources.");
+                    changedOutputFiles = emptySet();
                     doAttachFiles();
                 } else {
-                    final List<File> derivedProtoPathElements =
-                            makeProtoPathFromJars(temporaryProtoFileDirectory, getDependencyArtifactFiles());
-                    FileUtils.mkdir(outputDirectory.getAbsolutePath());
+                    final List<File> derivedProtoPathElements = makeDerivedProtoPath(protoFiles);
+                    recordProtoPath(protoSourceRootDirectories, derivedProtoPathElements);
+                    if (pruneProtoPath) {
+                        usedProtoPathElements = findUsedProtoPathElements(derivedProtoPathElements, protoFiles);
+                    }
+                    for (final File outputDirectory : outputDirectories) {
+                        FileUtils.mkdir(outputDirectory.getAbsolutePath());
+                    }
+
+                    if (!toolsPrepared) {
+                        resolveProtocExecutable();
+                    }
 
-                    if (clearOutputDirectory) {
+                    final Protoc protoc = buildProtoc(derivedProtoPathElements, protoFiles);
+
+                    final File manifestFile = getBuildManifestFile();
+                    final ProtocBuildManifest previousManifest = ProtocBuildManifest.read(manifestFile);
+                    final ProtocBuildManifest manifest = createBuildManifest(protoc, protoFiles, previousManifest);
+                    final boolean incremental = isIncrementalCompilation() && supportsIncrementalCompilation();
+                    if ((checkStaleness || incremental) && manifest.isUpToDate(previousManifest)) {
+                        getLog().info("Skipping compilation because sources and protoc configuration are unchanged.");
+                        changedOutputFiles = emptySet();
+                        doAttachFiles();
+                        return;
+                    }
+                    if (explain) {
+                        explainCompilation(manifest, previousManifest, checkStaleness || incremental);
+                    }
+                    IncrementalBuildPlan plan = null;
+                    if (incremental && previousManifest != null && manifest.getConfigurationEntries()
+                            .equals(previousManifest.getConfigurationEntries())) {
+                        plan = IncrementalBuildPlan.create(previousManifest, manifest, this::getProtoName);
+                    }
+                    // the manifest of a previous run is no longer valid once the outputs get overwritten
+                    FileUtils.fileDelete(manifestFile.getAbsolutePath());
+
+                    List<File> compiledFiles = protoFiles;
+                    Protoc compiledProtoc = protoc;
+                    changedOutputFiles = incremental ? new LinkedHashSet<>() : null;
+                    if (plan != null) {
+                        for (final File obsoleteOutput : plan.getObsoleteOutputs()) {
+                            FileUtils.fileDelete(obsoleteOutput.getAbsolutePath());
+                            changedOutputFiles.add(obsoleteOutput);
+                        }
+                        if (!plan.isFullRebuild()) {
+                            compiledFiles = new ArrayList<>();
+                            for (final File protoFile : protoFiles) {
+                                if (plan.getStaleSources().contains(protoFile.getAbsoluteFile())) {
+                                    compiledFiles.add(protoFile);
+                                }
+                            }
+                            compiledProtoc = compiledFiles.isEmpty()
+                                    ? null
+                                    : buildProtoc(derivedProtoPathElements, compiledFiles);
+                        }
+                        getLog().info(format("Incremental build: %d changed or affected, %d removed proto file(s)",
+                                compiledFiles.size(), plan.getRemovedSources().size()));
+                    }
+                    // a full rebuild cannot tell which of the existing outputs are stale
+                    if ((plan == null || plan.isFullRebuild()) && clearOutputDirectory) {
                         try {
-                            cleanDirectory(outputDirectory);
+                            for (final File outputDirectory : outputDirectories) {
+                                cleanDirectory(outputDirectory);
+                            }
                         } catch (final IOException e) {
                             throw new MojoInitializationException("Unable to clean output directory", e);
                         }
+                        changedOutputFiles = null;
                     }
 
-                    createProtocPlugins();
-
-                    //get toolchain from context
-                    final Toolchain tc = toolchainManager.getToolchainFromBuildContext("protobuf", session); //NOI18N
-                    if (tc != null) {
-                        getLog().info("Toolchain in protobuf-maven-plugin: " + tc);
-                        //when the executable to use is explicitly set by user in mojo's parameter, ignore toolchains.
-                        if (protocExecutable != null) {
-                            getLog().warn(
-                                    "Toolchains are ignored, 'protocExecutable' parameter is set to " + protocExecutable);
-                        } else {
-                            //assign the path to executable from toolchains
-                            protocExecutable = tc.findTool("protoc"); //NOI18N
+                    final Map<File, String> outputSnapshot = incremental ? snapshotOutputFiles() : emptyMap();
+                    if (compiledProtoc != null) {
+                        if (!toolsPrepared) {
+                            createProtocPlugins();
+                            toolsPrepared = isWarmStateRetained();
                         }
-                    }
-                    if (protocExecutable == null && protocArtifact != null) {
-                        final Artifact artifact = createDependencyArtifact(protocArtifact);
-                        final File file = resolveBinaryArtifact(artifact);
-                        protocExecutable = file.getAbsolutePath();
-                    }
-                    if (protocExecutable == null) {
-                        // Try to fall back to 'protoc' in $PATH
-                        getLog().warn("No 'protocExecutable' parameter is configured, using the default: 'protoc'");
-                        protocExecutable = "protoc";
-                    }
 
-                    final Protoc.Builder protocBuilder =
-                            new Protoc.Builder(protocExecutable)
-                                    .addProtoPathElement(protoSourceRoot)
-                                    .addProtoPathElements(derivedProtoPathElements)
-                                    .addProtoPathElements(asList(additionalProtoPathElements))
-                                    .addProtoFiles(protoFiles);
-                    addProtocBuilderParameters(protocBuilder);
-                    final Protoc protoc = protocBuilder.build();
-
-                    if (getLog().isDebugEnabled()) {
-                        getLog().debug("Proto source root:");
-                        getLog().debug(" " + protoSourceRoot);
-
-                        if (derivedProtoPathElements != null && !derivedProtoPathElements.isEmpty()) {
-                            getLog().debug("Derived proto paths:");
-                            for (final File path : derivedProtoPathElements) {
+                        if (getLog().isDebugEnabled()) {
+                            getLog().debug("Proto source roots:");
+                            for (final File path : protoSourceRootDirectories) {
                                 getLog().debug(" " + path);
                             }
-                        }
 
-                        if (additionalProtoPathElements != null && additionalProtoPathElements.length > 0) {
-                            getLog().debug("Additional proto paths:");
-                            for (final File path : additionalProtoPathElements) {
-                                getLog().debug(" " + path);
+                            if (derivedProtoPathElements != null && !derivedProtoPathElements.isEmpty()) {
+                                getLog().debug("Derived proto paths:");
+                                for (final File path : derivedProtoPathElements) {
+                                    getLog().debug(" " + path);
+                                }
+                            }
+
+                            if (additionalProtoPathElements != null && additionalProtoPathElements.length > 0) {
+                                getLog().debug("Additional proto paths:");
+                                for (final File path : additionalProtoPathElements) {
+                                    getLog().debug(" " + path);
+                                }
                             }
                         }
-                    }
-                    protoc.logExecutionParameters(getLog());
+                        compiledProtoc.logExecutionParameters(getLog());
 
-                    getLog().info(format("Compiling %d proto file(s) to %s", protoFiles.size(), outputDirectory));
+                        getLog().info(format("Compiling %d proto file(s) to %s",
+                                compiledFiles.size(), join(outputDirectories.iterator(), ", ")));
 
-                    final int exitStatus = protoc.execute(getLog());
-                    if (StringUtils.isNotBlank(protoc.getOutput())) {
-                        getLog().info("PROTOC: " + protoc.getOutput());
+                        executeProtoc(compiledProtoc, compiledFiles);
                     }
-                    if (exitStatus != 0) {
-                        getLog().error("PROTOC FAILED: " + protoc.getError());
-                        for (File pf : protoFiles) {
-                            buildContext.removeMessages(pf);
-                            buildContext.addMessage(pf, 0, 0, protoc.getError(), BuildContext.SEVERITY_ERROR, null);
+                    // the output tree is only walked when a later build checks the manifest
+                    if (incremental) {
+                        putGeneratedFiles(manifest, plan, compiledFiles, outputSnapshot);
+                        manifest.write(manifestFile);
+                    } else if (checkStaleness || explain) {
+                        for (final File outputDirectory : outputDirectories) {
+                            manifest.putOutputFiles(findGeneratedFilesInDirectory(outputDirectory));
                         }
-                        throw new MojoFailureException(
-                                "protoc did not exit cleanly. Review output for more information.");
-                    } else if (StringUtils.isNotBlank(protoc.getError())) {
-                        getLog().warn("PROTOC: " + protoc.getError());
+                        manifest.write(manifestFile);
                     }
                     doAttachFiles();
                 }
@@ -555,55 +1000,707 @@ abstract class AbstractProtocMojo extends AbstractMojo {
                 getLog().info("Process interrupted");
             }
         } else {
+            final List<File> configuredDirectories = new ArrayList<>();
+            for (final ProtoSourceRoot protoSourceRoot : getProtoSourceRoots()) {
+                configuredDirectories.add(protoSourceRoot.getDirectory());
+            }
             getLog().info(format("%s does not exist. Review the configuration or consider disabling the plugin.",
-                    protoSourceRoot));
+                    join(configuredDirectories.iterator(), ", ")));
         }
     }
 
     /**
-     * Generates native launchers for java protoc plugins.
-     * These launchers will later be added as parameters for protoc compiler.
+     * Extracts the dependency definitions and builds the import roots derived from them.
+     * When {@link #isWarmStateRetained()} is {@code true}, the import roots of a previous execution are reused,
+     * unless they depend on the compiled files, as with {@link #extractImportedProtosOnly}.
      *
-     * @since 0.3.0
+     * @param protoFiles the {@code .proto} files to compile.
+     * @return import roots extracted from dependencies.
      */
-    protected void createProtocPlugins() {
-        if (protocPlugins == null) {
-            return;
+    private List<File> makeDerivedProtoPath(final List<File> protoFiles) {
+        if (retainedDerivedProtoPathElements != null) {
+            return retainedDerivedProtoPathElements;
         }
-        final String javaHome = detectJavaHome();
-
-        for (final ProtocPlugin plugin : protocPlugins) {
-
-            if (plugin.getJavaHome() != null) {
-                getLog().debug("Using javaHome defined in plugin definition: " + plugin.getJavaHome());
-            } else {
-                getLog().debug("Setting javaHome for plugin: " + javaHome);
-                plugin.setJavaHome(javaHome);
-            }
-
-            getLog().info("Building protoc plugin: " + plugin.getId());
-            final ProtocPluginAssembler assembler = new ProtocPluginAssembler(
-                    plugin,
-                    session,
-                    project.getArtifact(),
-                    artifactFactory,
-                    repositorySystem,
-                    resolutionErrorHandler,
-                    localRepository,
-                    remoteRepositories,
-                    protocPluginDirectory,
-                    getLog());
-            assembler.execute();
+        dependencyDescriptorSetFiles = useDependencyDescriptorSets
+                ? getDependencyDescriptorSetFiles()
+                : emptyList();
+        if (extractImportedProtosOnly) {
+            return makeProtoPathFromImports(temporaryProtoFileDirectory, getDependencyArtifactFiles(), protoFiles);
         }
+        final List<File> derivedProtoPathElements =
+                makeProtoPathFromJars(temporaryProtoFileDirectory, getDependencyArtifactFiles());
+        if (isWarmStateRetained()) {
+            retainedDerivedProtoPathElements = derivedProtoPathElements;
+        }
+        return derivedProtoPathElements;
     }
 
     /**
-     * Attempts to detect java home directory, using {@code jdk} toolchain if available,
-     * with a fallback to {@code java.home} system property.
-     *
-     * @return path to java home directory.
+     * Creates a {@code protoc} invocation for the specified files.
      *
-     * @since 0.3.0
+     * @param derivedProtoPathElements import roots extracted from dependencies.
+     * @param protoFiles the {@code .proto} files to compile.
+     * @return a configured {@code protoc} invocation.
+     * @since 2.2.0
+     */
+    protected Protoc buildProtoc(final List<File> derivedProtoPathElements, final List<File> protoFiles) {
+        final Protoc.Builder protocBuilder =
+                new Protoc.Builder(protocExecutable)
+                        .addProtoPathElements(getProtoSourceRootDirectories())
+                        .addProtoPathElements(retainUsedProtoPathElements(derivedProtoPathElements))
+                        .addProtoPathElements(retainUsedProtoPathElements(asList(additionalProtoPathElements)))
+                        .addDescriptorSetInputs(dependencyDescriptorSetFiles)
+                        .addProtoFiles(protoFiles);
+        addProtocBuilderParameters(protocBuilder);
+        return protocBuilder.build();
+    }
+
+    /**
+     * Invokes {@code protoc} and reports its output.
+     *
+     * @param protoc a configured {@code protoc} invocation.
+     * @param protoFiles the compiled {@code .proto} files, used for reporting errors to the build context.
+     * @throws MojoFailureException if {@code protoc} did not exit cleanly.
+     * @throws CommandLineException if command line environment cannot be set up.
+     * @throws InterruptedException if the execution was interrupted by the user.
+     * @since 2.2.0
+     */
+    protected void executeProtoc(final Protoc protoc, final List<File> protoFiles)
+            throws MojoFailureException, CommandLineException, InterruptedException {
+        final List<List<File>> shards = protocParallelism > 1 && protoFiles.size() > 1
+                ? ProtoFileSharder.shard(protoFiles, this::getProtoName, protocParallelism)
+                : singletonList(protoFiles);
+        final List<Protoc> generatorProtocs = splitGenerators
+                ? protoc.splitByGenerator()
+                : singletonList(protoc);
+        if (shards.size() == 1 && generatorProtocs.size() == 1) {
+            reportProtocResult(protoc, protoc.execute(getLog()), protoFiles);
+        } else {
+            executeProtocInParallel(protoc, generatorProtocs, shards);
+        }
+    }
+
+    /**
+     * Compiles each shard of the files with each generator in a separate {@code protoc} process,
+     * running the processes at the same time, and merges the descriptor sets of the shards.
+     *
+     * @param protoc a configured {@code protoc} invocation for all files and generators.
+     * @param generatorProtocs invocations for all files, one per generator or a single one for all generators.
+     * @param shards the files to compile, split into shards.
+     * @throws MojoFailureException if {@code protoc} did not exit cleanly for any invocation.
+     * @throws CommandLineException if command line environment cannot be set up.
+     * @throws InterruptedException if the execution was interrupted by the user.
+     */
+    private void executeProtocInParallel(
+            final Protoc protoc,
+            final List<Protoc> generatorProtocs,
+            final List<List<File>> shards
+    ) throws MojoFailureException, CommandLineException, InterruptedException {
+        final File descriptorSetFile = protoc.getDescriptorSetFile();
+        final List<File> shardDescriptorSetFiles = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            shardDescriptorSetFiles.add(descriptorSetFile != null && shards.size() > 1
+                    ? new File(descriptorSetFile.getParentFile(), descriptorSetFile.getName() + ".shard-" + i)
+                    : descriptorSetFile);
+        }
+        final List<Protoc> invocations = new ArrayList<>();
+        final List<List<File>> invocationFiles = new ArrayList<>();
+        for (final Protoc generatorProtoc : generatorProtocs) {
+            for (int i = 0; i < shards.size(); i++) {
+                invocations.add(generatorProtoc.forShard(shards.get(i), shardDescriptorSetFiles.get(i)));
+                invocationFiles.add(shards.get(i));
+            }
+        }
+        final int threads = protocParallelism > 1
+                ? Math.min(invocations.size(), protocParallelism)
+                : invocations.size();
+        getLog().info(format("Compiling in %d shard(s) with %d generator invocation(s), "
+                        + "running up to %d protoc process(es) at the same time",
+                shards.size(), generatorProtocs.size(), threads));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+            final Map<Future<Integer>, Integer> invocationIndexes = new HashMap<>();
+            for (int i = 0; i < invocations.size(); i++) {
+                final Protoc invocation = invocations.get(i);
+                invocationIndexes.put(completionService.submit(() -> invocation.execute(getLog())), i);
+            }
+            // invocations are reported as they complete, so that the first failure ends the build
+            for (int i = 0; i < invocations.size(); i++) {
+                final Future<Integer> future = completionService.take();
+                final int invocationIndex = invocationIndexes.get(future);
+                final int exitStatus;
+                try {
+                    exitStatus = future.get();
+                } catch (final ExecutionException e) {
+                    if (e.getCause() instanceof CommandLineException) {
+                        throw (CommandLineException) e.getCause();
+                    }
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new MojoInitializationException(e.getCause().getMessage(), e.getCause());
+                }
+                reportProtocResult(
+                        invocations.get(invocationIndex), exitStatus, invocationFiles.get(invocationIndex));
+            }
+        } finally {
+            // interrupting the remaining invocations destroys their processes
+            executor.shutdownNow();
+        }
+
+        if (descriptorSetFile != null && shards.size() > 1) {
+            DescriptorSetReader.merge(shardDescriptorSetFiles, descriptorSetFile);
+            for (final File shardDescriptorSetFile : shardDescriptorSetFiles) {
+                FileUtils.fileDelete(shardDescriptorSetFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Reports the outcome of a {@code protoc} invocation, whose output has already been logged while it ran.
+     * The diagnostics about the compiled files are attached to them in the build context. An error that does
+     * not refer to any of them is attached once, to the first compiled file.
+     *
+     * @param protoc a completed {@code protoc} invocation.
+     * @param exitStatus the exit status of {@code protoc}.
+     * @param protoFiles the compiled {@code .proto} files, used for reporting errors to the build context.
+     * @throws MojoFailureException if {@code protoc} did not exit cleanly.
+     */
+    private void reportProtocResult(final Protoc protoc, final int exitStatus, final List<File> protoFiles)
+            throws MojoFailureException {
+        // protoc reports input files either by import name or by the path they were passed with
+        final Map<String, File> protoFilesByName = new HashMap<>();
+        for (final File protoFile : protoFiles) {
+            buildContext.removeMessages(protoFile);
+            protoFilesByName.put(getProtoName(protoFile), protoFile);
+            protoFilesByName.put(protoFile.toString(), protoFile);
+        }
+        boolean errorAttributed = false;
+        for (final ProtocOutputConsumer.Diagnostic diagnostic : protoc.getDiagnostics()) {
+            final File protoFile = protoFilesByName.get(diagnostic.getFileName());
+            if (protoFile != null) {
+                buildContext.addMessage(protoFile, diagnostic.getLine(), diagnostic.getColumn(),
+                        diagnostic.getMessage(),
+                        diagnostic.isWarning() ? BuildContext.SEVERITY_WARNING : BuildContext.SEVERITY_ERROR,
+                        null);
+                errorAttributed |= !diagnostic.isWarning();
+            }
+        }
+        if (exitStatus != 0) {
+            if (!errorAttributed) {
+                // e.g. an error in an imported file, or a failing plugin:
+                // report it once rather than on every compiled file
+                final File resource = protoFiles.isEmpty() ? project.getFile() : protoFiles.get(0);
+                buildContext.addMessage(resource, 0, 0, protoc.getError(), BuildContext.SEVERITY_ERROR, null);
+            }
+            throw new MojoFailureException(
+                    "protoc did not exit cleanly. Review output for more information.");
+        }
+    }
+
+    /**
+     * Records the generated files in the build manifest, attributing each of them to the source file
+     * it was produced from, so that subsequent incremental builds can tell which files are obsolete.
+     *
+     * @param manifest the build manifest of the current run.
+     * @param plan the incremental build plan, or {@code null} if all sources were compiled.
+     * @param compiledFiles the source files compiled in the current run.
+     * @param outputSnapshot the state of the generated files before {@code protoc} was invoked,
+     *                       as returned by {@link #snapshotOutputFiles()}.
+     * @since 2.2.0
+     */
+    protected void putGeneratedFiles(
+            final ProtocBuildManifest manifest,
+            final IncrementalBuildPlan plan,
+            final List<File> compiledFiles,
+            final Map<File, String> outputSnapshot
+    ) {
+        final boolean partial = plan != null && !plan.isFullRebuild();
+        final Map<File, Set<File>> retainedOutputs = partial ? plan.getRetainedOutputs() : emptyMap();
+        for (final Map.Entry<File, Set<File>> entry : retainedOutputs.entrySet()) {
+            manifest.putOutputFile(entry.getKey(), entry.getValue());
+        }
+        final Map<String, File> compiledFilesByName = new HashMap<>();
+        for (final File compiledFile : compiledFiles) {
+            compiledFilesByName.put(getProtoName(compiledFile), compiledFile);
+        }
+        for (final File outputDirectory : getOutputDirectories()) {
+            for (final File outputFile : findGeneratedFilesInDirectory(outputDirectory)) {
+                // skip files that were not written by this run
+                if (retainedOutputs.containsKey(outputFile.getAbsoluteFile())
+                        || getFileState(outputFile).equals(outputSnapshot.get(outputFile.getAbsoluteFile()))) {
+                    continue;
+                }
+                if (changedOutputFiles != null) {
+                    changedOutputFiles.add(outputFile);
+                }
+                final File source = IncrementalBuildPlan.findSource(outputFile, compiledFilesByName);
+                if (source != null) {
+                    manifest.putOutputFile(outputFile, singleton(source));
+                } else {
+                    manifest.putOutputFile(outputFile, partial ? compiledFiles : null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the state of the files in the output directories, so that the files written by {@code protoc}
+     * can be told apart afterwards. Comparing the states of each file, rather than its modification time with
+     * the current time, is neither affected by clock skew nor by coarse timestamps, since the obsolete outputs
+     * are deleted before {@code protoc} is invoked, so that all of the files it writes are new.
+     *
+     * @return the state of each generated file, by absolute file.
+     * @since 2.2.0
+     */
+    protected Map<File, String> snapshotOutputFiles() {
+        final Map<File, String> snapshot = new HashMap<>();
+        for (final File outputDirectory : getOutputDirectories()) {
+            for (final File outputFile : findGeneratedFilesInDirectory(outputDirectory)) {
+                snapshot.put(outputFile.getAbsoluteFile(), getFileState(outputFile));
+            }
+        }
+        return snapshot;
+    }
+
+    private static String getFileState(final File file) {
+        return file.length() + ":" + file.lastModified();
+    }
+
+    /**
+     * Returns the name of a {@code .proto} file relative to the proto source root containing it,
+     * i.e. the name other definitions use to import it.
+     *
+     * @param protoFile a {@code .proto} file.
+     * @return the import name of the file.
+     * @since 2.2.0
+     */
+    protected String getProtoName(final File protoFile) {
+        final Path path = protoFile.getAbsoluteFile().toPath();
+        Path name = path.getFileName();
+        for (final File protoSourceRoot : getProtoSourceRootDirectories()) {
+            final Path root = protoSourceRoot.getAbsoluteFile().toPath();
+            if (path.startsWith(root)) {
+                name = root.relativize(path);
+                break;
+            }
+        }
+        return name.toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Tells whether this mojo produces output per compiled file, so that it can be compiled incrementally.
+     *
+     * @return {@code true} if {@link #incrementalCompilation} can be applied.
+     * @since 2.2.0
+     */
+    protected boolean supportsIncrementalCompilation() {
+        return true;
+    }
+
+    /**
+     * Tells whether only the changed files and the files affected by them should be compiled.
+     * Builds in an IDE are always incremental, as they run whenever a file is saved.
+     *
+     * @return {@code true} if {@link #incrementalCompilation} is enabled or the changed files are known.
+     * @since 2.2.0
+     */
+    protected boolean isIncrementalCompilation() {
+        return incrementalCompilation || changedProtoFiles != null;
+    }
+
+    /**
+     * Tells whether the dependency import roots, the {@code protoc} executable and plugins are kept
+     * between executions of the same mojo instance, so that long-running goals set them up only once.
+     *
+     * @return {@code true} to keep the state of previous executions.
+     * @since 2.2.0
+     */
+    protected boolean isWarmStateRetained() {
+        return false;
+    }
+
+    /**
+     * Sets the proto files known to have changed since the previous execution, so that the other files
+     * do not have to be read again to detect changes.
+     *
+     * @param changedProtoFiles the changed files, or {@code null} if they are not known.
+     * @since 2.2.0
+     */
+    protected void setChangedProtoFiles(final Set<File> changedProtoFiles) {
+        this.changedProtoFiles = changedProtoFiles;
+    }
+
+    /**
+     * Resolves the {@code protoc} executable from the toolchain, the {@link #protocArtifact} specification,
+     * or falls back to {@code protoc} in the {@code PATH}, unless {@link #protocExecutable} is already set.
+     *
+     * @since 2.2.0
+     */
+    protected void resolveProtocExecutable() {
+        //get toolchain from context
+        final Toolchain tc = toolchainManager.getToolchainFromBuildContext("protobuf", session); //NOI18N
+        if (tc != null) {
+            getLog().info("Toolchain in protobuf-maven-plugin: " + tc);
+            //when the executable to use is explicitly set by user in mojo's parameter, ignore toolchains.
+            if (protocExecutable != null) {
+                getLog().warn(
+                        "Toolchains are ignored, 'protocExecutable' parameter is set to " + protocExecutable);
+            } else {
+                //assign the path to executable from toolchains
+                protocExecutable = tc.findTool("protoc"); //NOI18N
+            }
+        }
+        if (protocExecutable == null && protocArtifact != null) {
+            final Artifact artifact = createDependencyArtifact(protocArtifact);
+            final File file = resolveBinaryArtifact(artifact);
+            protocExecutable = file.getAbsolutePath();
+        }
+        if (protocExecutable == null) {
+            // Try to fall back to 'protoc' in $PATH
+            getLog().warn("No 'protocExecutable' parameter is configured, using the default: 'protoc'");
+            protocExecutable = "protoc";
+        }
+    }
+
+    /**
+     * Finds the import roots that provide the files imported by the compiled files.
+     *
+     * @param derivedProtoPathElements import roots extracted from dependencies.
+     * @param protoFiles the {@code .proto} files to compile.
+     * @return the used import roots.
+     */
+    private Set<File> findUsedProtoPathElements(
+            final List<File> derivedProtoPathElements,
+            final List<File> protoFiles
+    ) {
+        final List<File> protoSourceRootDirectories = getProtoSourceRootDirectories();
+        final List<File> protoPathElements = new ArrayList<>(protoSourceRootDirectories);
+        protoPathElements.addAll(derivedProtoPathElements);
+        protoPathElements.addAll(asList(additionalProtoPathElements));
+        final Set<File> usedElements = new ProtoPathPruner(protoPathElements).findUsedProtoPathElements(protoFiles);
+        if (getLog().isDebugEnabled()) {
+            // the proto source roots are always passed to protoc, so they are not part of the pruned list
+            final List<File> prunableElements =
+                    protoPathElements.subList(protoSourceRootDirectories.size(), protoPathElements.size());
+            getLog().debug(format("Pruned proto path: %d of %d import root(s) provide imported files",
+                    ProtoPathPruner.retainUsed(prunableElements, usedElements).size(), prunableElements.size()));
+            for (final File protoPathElement : prunableElements) {
+                getLog().debug((usedElements.contains(protoPathElement) ? " + " : " - ") + protoPathElement);
+            }
+        }
+        return usedElements;
+    }
+
+    private List<File> retainUsedProtoPathElements(final List<File> protoPathElements) {
+        return usedProtoPathElements != null
+                ? ProtoPathPruner.retainUsed(protoPathElements, usedProtoPathElements)
+                : protoPathElements;
+    }
+
+    /**
+     * Called once the import roots of the current execution are known, before {@code protoc} is invoked.
+     * Does nothing by default.
+     *
+     * @param protoSourceRoots the existing proto source roots.
+     * @param derivedProtoPathElements the import roots extracted from dependencies.
+     * @since 2.2.0
+     */
+    protected void recordProtoPath(final List<File> protoSourceRoots, final List<File> derivedProtoPathElements) {
+    }
+
+    /**
+     * Returns the location of the build manifest for the current execution.
+     *
+     * @return build manifest file.
+     * @since 2.2.0
+     */
+    protected File getBuildManifestFile() {
+        return new File(manifestDirectory, getExecutionKey() + ".properties");
+    }
+
+    /**
+     * Returns a name that identifies the current execution within the project.
+     *
+     * @return the goal and the id of the current execution.
+     * @since 2.2.0
+     */
+    protected String getExecutionKey() {
+        return mojoExecution != null
+                ? mojoExecution.getGoal() + '-' + mojoExecution.getExecutionId()
+                : getClass().getSimpleName();
+    }
+
+    /**
+     * Records the inputs of the specified {@code protoc} invocation in a new build manifest.
+     *
+     * @param protoc a configured {@code protoc} invocation.
+     * @param protoFiles the compiled {@code .proto} files.
+     * @return a build manifest without generated files.
+     * @since 2.2.0
+     */
+    protected ProtocBuildManifest createBuildManifest(final Protoc protoc, final Iterable<File> protoFiles) {
+        return createBuildManifest(protoc, protoFiles, null);
+    }
+
+    /**
+     * Records the inputs of the specified {@code protoc} invocation in a new build manifest.
+     * When the build context reports which files have changed, the hashes and imports of the other files
+     * are taken from the previous manifest, instead of reading the files again.
+     *
+     * @param protoc a configured {@code protoc} invocation.
+     * @param protoFiles the compiled {@code .proto} files.
+     * @param previousManifest the manifest of the previous execution, or {@code null}.
+     * @return a build manifest without generated files.
+     * @since 2.2.0
+     */
+    protected ProtocBuildManifest createBuildManifest(
+            final Protoc protoc,
+            final Iterable<File> protoFiles,
+            final ProtocBuildManifest previousManifest
+    ) {
+        final ProtocBuildManifest manifest = new ProtocBuildManifest();
+        for (final File protoFile : protoFiles) {
+            final String sourceKey = ProtocBuildManifest.SOURCE_PREFIX + protoFile.getAbsolutePath();
+            final String importKey = ProtocBuildManifest.IMPORT_PREFIX + protoFile.getAbsolutePath();
+            if (changedProtoFiles != null && previousManifest != null
+                    && !changedProtoFiles.contains(protoFile.getAbsoluteFile())
+                    && previousManifest.get(sourceKey) != null && previousManifest.get(importKey) != null) {
+                manifest.put(sourceKey, previousManifest.get(sourceKey));
+                manifest.put(importKey, previousManifest.get(importKey));
+                continue;
+            }
+            final byte[] content;
+            try {
+                content = Files.readAllBytes(protoFile.toPath());
+            } catch (final IOException e) {
+                throw new MojoInitializationException("Unable to read " + protoFile.getAbsolutePath(), e);
+            }
+            manifest.put(ProtocBuildManifest.SOURCE_PREFIX + protoFile.getAbsolutePath(),
+                    ProtocBuildManifest.sha256(content));
+            manifest.putImports(protoFile, ProtoImportScanner.scanImports(new String(content, UTF_8)));
+        }
+        final File protocFile = new File(protocExecutable);
+        manifest.put(ProtocBuildManifest.PROTOC_KEY, protocFile.isFile()
+                ? ProtocBuildManifest.sha256(protocFile)
+                : protocExecutable);
+        // import roots are only read when the manifest is used for deciding whether to compile
+        final List<String> options = checkStaleness || explain || isIncrementalCompilation()
+                ? fingerprintProtoPath(protoc, manifest)
+                : protoc.buildProtocOptions();
+        manifest.put(ProtocBuildManifest.COMMAND_KEY, join(options.iterator(), "\n"));
+        if (protocPlugins != null) {
+            for (final ProtocPlugin plugin : protocPlugins) {
+                manifest.put(ProtocBuildManifest.PLUGIN_PREFIX + plugin.getId(), plugin.toString());
+            }
+        }
+        for (final File descriptorSetFile : dependencyDescriptorSetFiles) {
+            manifest.put(ProtocBuildManifest.DESCRIPTOR_SET_PREFIX + descriptorSetFile.getAbsolutePath(),
+                    ProtocBuildManifest.sha256(descriptorSetFile));
+        }
+        return manifest;
+    }
+
+    /**
+     * Replaces the import roots other than the proto source roots in the {@code protoc} command line
+     * by references to fingerprints of their proto files, which are recorded in the manifest.
+     * The manifest thus reflects the imported definitions rather than where they have been extracted to,
+     * so that a rebuilt dependency with unchanged definitions does not trigger a recompilation,
+     * while a changed definition always does.
+     *
+     * @param protoc a configured {@code protoc} invocation.
+     * @param manifest the manifest to record the fingerprints in.
+     * @return the command line options, with references to fingerprints instead of import roots.
+     */
+    private List<String> fingerprintProtoPath(final Protoc protoc, final ProtocBuildManifest manifest) {
+        final String protoPathOption = "--proto_path=";
+        final Set<String> sourceRootOptions = new HashSet<>();
+        for (final File protoSourceRoot : getProtoSourceRootDirectories()) {
+            sourceRootOptions.add(protoPathOption + protoSourceRoot);
+        }
+        final List<String> options = new ArrayList<>();
+        fingerprintedProtoPathElements.clear();
+        for (final String option : protoc.buildProtocOptions()) {
+            if (option.startsWith(protoPathOption) && !sourceRootOptions.contains(option)) {
+                final File protoPathElement = new File(option.substring(protoPathOption.length()));
+                String fingerprint = protoPathFingerprints.get(protoPathElement);
+                if (fingerprint == null) {
+                    fingerprint = fingerprintUncachedProtoPathElement(protoPathElement);
+                }
+                String key = ProtocBuildManifest.PROTO_PATH_PREFIX + getProtoPathElementKey(protoPathElement);
+                if (fingerprintedProtoPathElements.containsKey(key)) {
+                    key += "#" + fingerprintedProtoPathElements.size();
+                }
+                manifest.put(key, fingerprint);
+                fingerprintedProtoPathElements.put(key, protoPathElement);
+                options.add(protoPathOption + key);
+            } else {
+                options.add(option);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Reports why {@code protoc} is about to be invoked, by comparing the inputs with those
+     * of the last successful execution.
+     *
+     * @param manifest the manifest of this execution.
+     * @param previousManifest the manifest of the last successful execution, or {@code null}.
+     * @param skippable whether compilation is skipped when the inputs are unchanged.
+     */
+    private void explainCompilation(
+            final ProtocBuildManifest manifest,
+            final ProtocBuildManifest previousManifest,
+            final boolean skippable
+    ) {
+        final List<String> reasons = manifest.explainChanges(previousManifest, fingerprintedProtoPathElements);
+        if (reasons.isEmpty()) {
+            getLog().info("[explain] Inputs are unchanged since the last successful execution, "
+                    + "compilation would be skipped with checkStaleness enabled");
+            return;
+        }
+        getLog().info(format("[explain] Compiling because %d input(s) differ from the last successful execution:",
+                reasons.size()));
+        for (final String reason : reasons) {
+            for (final String line : reason.split("\n")) {
+                getLog().info("[explain]   " + line);
+            }
+        }
+        if (!skippable) {
+            getLog().info("[explain] Compilation is never skipped, as neither checkStaleness "
+                    + "nor incrementalCompilation is enabled");
+        }
+    }
+
+    /**
+     * Returns a name identifying an import root across builds: the coordinates of the dependency it has been
+     * extracted from, or its path relative to the project base directory, since the directories dependencies
+     * are extracted to are named after their content.
+     *
+     * @param protoPathElement an import root.
+     * @return the stable name of the import root.
+     */
+    private String getProtoPathElementKey(final File protoPathElement) {
+        final String dependencyKey = protoPathElementDependencyKeys.get(protoPathElement);
+        if (dependencyKey != null) {
+            return dependencyKey;
+        }
+        final Path path = protoPathElement.getAbsoluteFile().toPath();
+        final Path basedir = project.getBasedir().getAbsoluteFile().toPath();
+        return path.startsWith(basedir)
+                ? basedir.relativize(path).toString().replace(File.separatorChar, '/')
+                : path.toString();
+    }
+
+    /**
+     * Computes the fingerprint of an import root that is not covered by the extraction cache, such as
+     * an additional proto path element or the output directory of a module of the same reactor.
+     * The fingerprint is cached along with the sizes and modification times of the proto files,
+     * so that they are only hashed again when any of them changes.
+     *
+     * @param protoPathElement an import root.
+     * @return the fingerprint of its proto files.
+     */
+    private String fingerprintUncachedProtoPathElement(final File protoPathElement) {
+        final StringBuilder listing = new StringBuilder();
+        if (protoPathElement.isDirectory()) {
+            final Path root = protoPathElement.toPath();
+            for (final File file : new SourceFileScanner(new String[]{DEFAULT_INCLUDES}, new String[0])
+                    .scan(protoPathElement)) {
+                listing.append(file.length()).append(' ').append(file.lastModified()).append(' ')
+                        .append(root.relativize(file.toPath()).toString().replace(File.separatorChar, '/'))
+                        .append('\n');
+            }
+        }
+        final String stamp = ProtocBuildManifest.sha256(listing.toString().getBytes(UTF_8));
+
+        final File cacheFile = new File(manifestDirectory, PROTO_PATH_FINGERPRINTS_FILE_NAME);
+        final Properties fingerprints = new Properties();
+        if (cacheFile.isFile()) {
+            try (final InputStream in = Files.newInputStream(cacheFile.toPath())) {
+                fingerprints.load(in);
+            } catch (final IOException e) {
+                getLog().debug("Ignoring unreadable fingerprint cache " + cacheFile);
+            }
+        }
+        final String key = protoPathElement.getAbsolutePath();
+        final String cached = fingerprints.getProperty(key);
+        if (cached != null && cached.startsWith(stamp + ' ')) {
+            return cached.substring(stamp.length() + 1);
+        }
+        final String fingerprint = fingerprintProtoFiles(protoPathElement);
+        fingerprints.setProperty(key, stamp + ' ' + fingerprint);
+        ProtocBuildManifest.writeProperties(fingerprints, cacheFile, "proto path fingerprints, do not edit");
+        return fingerprint;
+    }
+
+    /**
+     * Computes a fingerprint of the proto files of an import root, from their names and contents.
+     *
+     * @param protoPathElement an import root.
+     * @return the SHA-256 hash of the list of proto files and their hashes.
+     */
+    private static String fingerprintProtoFiles(final File protoPathElement) {
+        final StringBuilder listing = new StringBuilder();
+        if (protoPathElement.isDirectory()) {
+            final Path root = protoPathElement.toPath();
+            for (final File file : new SourceFileScanner(new String[]{DEFAULT_INCLUDES}, new String[0])
+                    .scan(protoPathElement)) {
+                listing.append(ProtocBuildManifest.sha256(file)).append(' ')
+                        .append(root.relativize(file.toPath()).toString().replace(File.separatorChar, '/'))
+                        .append('\n');
+            }
+        }
+        return ProtocBuildManifest.sha256(listing.toString().getBytes(UTF_8));
+    }
+
+    /**
+     * Generates native launchers for java protoc plugins.
+     * These launchers will later be added as parameters for protoc compiler.
+     *
+     * @since 0.3.0
+     */
+    protected void createProtocPlugins() {
+        if (protocPlugins == null) {
+            return;
+        }
+        final String javaHome = detectJavaHome();
+
+        for (final ProtocPlugin plugin : protocPlugins) {
+
+            if (plugin.getJavaHome() != null) {
+                getLog().debug("Using javaHome defined in plugin definition: " + plugin.getJavaHome());
+            } else {
+                getLog().debug("Setting javaHome for plugin: " + javaHome);
+                plugin.setJavaHome(javaHome);
+            }
+
+            getLog().info("Building protoc plugin: " + plugin.getId());
+            final ProtocPluginAssembler assembler = new ProtocPluginAssembler(
+                    plugin,
+                    session,
+                    project.getArtifact(),
+                    artifactFactory,
+                    repositorySystem,
+                    resolutionErrorHandler,
+                    localRepository,
+                    remoteRepositories,
+                    protocPluginDirectory,
+                    getLog());
+            assembler.execute();
+        }
+    }
+
+    /**
+     * Attempts to detect java home directory, using {@code jdk} toolchain if available,
+     * with a fallback to {@code java.home} system property.
+     *
+     * @return path to java home directory.
+     *
+     * @since 0.3.0
      */
     protected String detectJavaHome() {
         String javaHome = null;
@@ -658,6 +1755,99 @@ abstract class AbstractProtocMojo extends AbstractMojo {
         protocBuilder.useArgumentFile(useArgumentFile);
     }
 
+    /**
+     * Locates the executable of a native {@code protoc} plugin. An explicitly configured executable takes
+     * precedence over the tool of a toolchain, which in turn takes precedence over a plugin artifact.
+     *
+     * @param pluginExecutable the configured path to the plugin executable, may be {@code null}.
+     * @param pluginToolchain the name of a toolchain providing the plugin, may be {@code null}.
+     * @param pluginTool the tool of {@code pluginToolchain} to use as plugin executable, may be {@code null}.
+     * @param pluginArtifact the plugin artifact specification, may be {@code null}.
+     * @return the path to the plugin executable, or {@code null} if none is configured.
+     * @since 2.2.0
+     */
+    protected String resolveNativePluginExecutable(
+            final String pluginExecutable,
+            final String pluginToolchain,
+            final String pluginTool,
+            final String pluginArtifact
+    ) {
+        String executable = pluginExecutable;
+        if (pluginToolchain != null && pluginTool != null) {
+            //get toolchain from context
+            final Toolchain tc = toolchainManager.getToolchainFromBuildContext(pluginToolchain, session);
+            if (tc != null) {
+                getLog().info("Toolchain in protobuf-maven-plugin: " + tc);
+                //when the executable to use is explicitly set by user in mojo's parameter, ignore toolchains.
+                if (executable != null) {
+                    getLog().warn("Toolchains are ignored, 'pluginExecutable' parameter is set to " + executable);
+                } else {
+                    //assign the path to executable from toolchains
+                    executable = tc.findTool(pluginTool);
+                }
+            }
+        }
+        if (executable == null && pluginArtifact != null) {
+            final Artifact artifact = createDependencyArtifact(pluginArtifact);
+            final File file = resolveBinaryArtifact(artifact);
+            executable = file.getAbsolutePath();
+        }
+        return executable;
+    }
+
+    /**
+     * Configures a native {@code protoc} plugin.
+     *
+     * @param protocBuilder the builder to be modified.
+     * @param pluginId the id of the plugin.
+     * @param pluginExecutable the path to the plugin executable, as returned by
+     *                         {@link #resolveNativePluginExecutable}, may be {@code null}.
+     * @param pluginParameter the parameter passed to the plugin, may be {@code null}.
+     * @param extraArgs extra arguments appended to the {@code protoc} command line, may be {@code null}.
+     * @param outputDirectory the directory the plugin writes to.
+     * @since 2.2.0
+     */
+    protected static void addNativePluginParameters(
+            final Protoc.Builder protocBuilder,
+            final String pluginId,
+            final String pluginExecutable,
+            final String pluginParameter,
+            final String extraArgs,
+            final File outputDirectory
+    ) {
+        protocBuilder.setNativePluginId(pluginId);
+        if (pluginExecutable != null) {
+            protocBuilder.setNativePluginExecutable(pluginExecutable);
+        }
+        if (pluginParameter != null) {
+            protocBuilder.setNativePluginParameter(pluginParameter);
+        }
+        if (extraArgs != null) {
+            protocBuilder.setExtraArgs(extraArgs);
+        }
+        protocBuilder.setCustomOutputDirectory(outputDirectory);
+    }
+
+    /**
+     * Configures the output of a binary descriptor set.
+     *
+     * @param protocBuilder the builder to be modified.
+     * @param descriptorSetFile the descriptor set file to write.
+     * @param includeImports whether to include all dependencies in the descriptor set.
+     * @param includeSourceInfo whether to retain the source code information in the descriptor set.
+     * @since 2.2.0
+     */
+    protected void addDescriptorSetParameters(
+            final Protoc.Builder protocBuilder,
+            final File descriptorSetFile,
+            final boolean includeImports,
+            final boolean includeSourceInfo
+    ) {
+        getLog().info("Will generate descriptor set:");
+        getLog().info(" " + descriptorSetFile.getAbsolutePath());
+        protocBuilder.withDescriptorSetFile(descriptorSetFile, includeImports, includeSourceInfo);
+    }
+
     /**
      * <p>Determine if the mojo execution should get skipped.</p>
      * This is the case if:
@@ -681,227 +1871,1011 @@ abstract class AbstractProtocMojo extends AbstractMojo {
             getLog().info("Skipping mojo execution for project with packaging type 'pom'");
             return true;
         }
-
+
+        return false;
+    }
+
+    protected static List<File> findGeneratedFilesInDirectory(final File directory) {
+        if (directory == null || !directory.isDirectory()) {
+            return emptyList();
+        }
+
+        return new SourceFileScanner(new String[] {"**/*"}, new String[0]).scan(directory);
+    }
+
+    /**
+     * Checks if the injected build context has changes in any of the specified files.
+     *
+     * @param files files to be checked for changes.
+     * @return {@code true}, if at least one file has changes; {@code false}, if no files have changes.
+     *
+     * @since 0.3.0
+     */
+    protected boolean hasDelta(final Iterable<File> files) {
+        if (buildContext.isIncremental()) {
+            return collectProtoFileDeltas();
+        }
+        for (final File file : files) {
+            if (buildContext.hasDelta(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects the proto files that the build context reports as changed or deleted since its last build.
+     *
+     * @return {@code true} if any proto file has changed or has been deleted.
+     */
+    private boolean collectProtoFileDeltas() {
+        changedProtoFiles = new HashSet<>();
+        int deletedFileCount = 0;
+        for (final ProtoSourceRoot protoSourceRoot : getProtoSourceRoots()) {
+            final File directory = protoSourceRoot.getDirectory();
+            if (!directory.isDirectory()) {
+                continue;
+            }
+            final Scanner scanner = buildContext.newScanner(directory);
+            scanner.setIncludes(getIncludes(protoSourceRoot));
+            scanner.setExcludes(getExcludes(protoSourceRoot));
+            scanner.scan();
+            for (final String name : scanner.getIncludedFiles()) {
+                changedProtoFiles.add(new File(directory, name).getAbsoluteFile());
+            }
+            final Scanner deleteScanner = buildContext.newDeleteScanner(directory);
+            deleteScanner.setIncludes(getIncludes(protoSourceRoot));
+            deleteScanner.setExcludes(getExcludes(protoSourceRoot));
+            deleteScanner.scan();
+            deletedFileCount += deleteScanner.getIncludedFiles().length;
+        }
+        if (getLog().isDebugEnabled()) {
+            getLog().debug(format("Build context reports %d changed and %d deleted proto file(s)",
+                    changedProtoFiles.size(), deletedFileCount));
+        }
+        return !changedProtoFiles.isEmpty() || deletedFileCount > 0;
+    }
+
+    /**
+     * Notifies the build context of the generated files, so that the IDE picks them up.
+     * Only the files written or deleted by this execution are refreshed, when they are known.
+     *
+     * @param outputDirectory the output directory.
+     * @since 2.2.0
+     */
+    protected void refreshGeneratedFiles(final File outputDirectory) {
+        if (changedOutputFiles == null) {
+            buildContext.refresh(outputDirectory);
+        } else {
+            for (final File outputFile : changedOutputFiles) {
+                buildContext.refresh(outputFile);
+            }
+        }
+    }
+
+    protected void checkParameters() {
+        if (project == null) {
+            throw new MojoConfigurationException("'project' is null");
+        }
+        if (projectHelper == null) {
+            throw new MojoConfigurationException("'projectHelper' is null");
+        }
+        if (protoSourceRoots != null && !protoSourceRoots.isEmpty()) {
+            for (final ProtoSourceRoot protoSourceRoot : protoSourceRoots) {
+                protoSourceRoot.validate();
+            }
+        } else {
+            final File protoSourceRoot = getProtoSourceRoot();
+            if (protoSourceRoot == null) {
+                throw new MojoConfigurationException("'protoSourceRoot' is null");
+            }
+            if (protoSourceRoot.isFile()) {
+                throw new MojoConfigurationException("'protoSourceRoot' is a file, not a directory");
+            }
+        }
+        if (temporaryProtoFileDirectory == null) {
+            throw new MojoConfigurationException("'temporaryProtoFileDirectory' is null");
+        }
+        if (temporaryProtoFileDirectory.isFile()) {
+            throw new MojoConfigurationException("'temporaryProtoFileDirectory' is a file, not a directory");
+        }
+        if (dependencyProtoFilters != null) {
+            for (final DependencyProtoFilter filter : dependencyProtoFilters) {
+                filter.validate();
+            }
+        }
+        if (sharedProtoCacheDirectory != null && sharedProtoCacheDirectory.isFile()) {
+            throw new MojoConfigurationException("'sharedProtoCacheDirectory' is a file, not a directory");
+        }
+        if (protocParallelism < 1) {
+            throw new MojoConfigurationException("'protocParallelism' must be at least 1");
+        }
+        for (final File outputDirectory : getOutputDirectories()) {
+            if (outputDirectory == null) {
+                throw new MojoConfigurationException("'outputDirectory' is null");
+            }
+            if (outputDirectory.isFile()) {
+                throw new MojoConfigurationException("'outputDirectory' is a file, not a directory");
+            }
+        }
+    }
+
+    protected abstract File getProtoSourceRoot();
+
+    /**
+     * Returns the configured {@link #protoSourceRoots}, or else the proto source root of the goal,
+     * with the mojo-wide includes and excludes.
+     *
+     * @return the source roots to compile.
+     * @since 2.2.0
+     */
+    protected List<ProtoSourceRoot> getProtoSourceRoots() {
+        if (protoSourceRoots != null && !protoSourceRoots.isEmpty()) {
+            return protoSourceRoots;
+        }
+        return singletonList(new ProtoSourceRoot(getProtoSourceRoot(), getIncludes(), getExcludes()));
+    }
+
+    /**
+     * Returns the directories of the source roots that exist, which are the first import roots
+     * of the compilation, in the configured order.
+     *
+     * @return existing source root directories.
+     * @since 2.2.0
+     */
+    protected List<File> getProtoSourceRootDirectories() {
+        final List<File> directories = new ArrayList<>();
+        for (final ProtoSourceRoot protoSourceRoot : getProtoSourceRoots()) {
+            if (protoSourceRoot.getDirectory().isDirectory()) {
+                directories.add(protoSourceRoot.getDirectory());
+            }
+        }
+        return directories;
+    }
+
+    protected String[] getIncludes() {
+        return includes;
+    }
+
+    protected String[] getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * Returns the include patterns of a source root, which default to the mojo-wide ones.
+     *
+     * @param protoSourceRoot a source root.
+     * @return include patterns.
+     * @since 2.2.0
+     */
+    protected String[] getIncludes(final ProtoSourceRoot protoSourceRoot) {
+        final List<String> rootIncludes = protoSourceRoot.getIncludes();
+        return rootIncludes.isEmpty() ? getIncludes() : rootIncludes.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the exclude patterns of a source root, which default to the mojo-wide ones.
+     *
+     * @param protoSourceRoot a source root.
+     * @return exclude patterns.
+     * @since 2.2.0
+     */
+    protected String[] getExcludes(final ProtoSourceRoot protoSourceRoot) {
+        final List<String> rootExcludes = protoSourceRoot.getExcludes();
+        return rootExcludes.isEmpty() ? getExcludes() : rootExcludes.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the additional import roots configured by {@link #additionalProtoPathElements}.
+     *
+     * @return additional import roots.
+     * @since 2.2.0
+     */
+    protected List<File> getAdditionalProtoPathElements() {
+        return asList(additionalProtoPathElements);
+    }
+
+    /**
+     * Returns the dependency artifacts, before {@link #dependencyIncludes} and {@link #dependencyExcludes}
+     * are applied.
+     *
+     * @return dependency artifacts.
+     */
+    protected abstract List<Artifact> getDependencyArtifacts();
+
+    /**
+     * Returns the output directory for generated sources. Depends on build phase so must
+     * be defined in concrete implementation.
+     *
+     * @return output directory for generated sources.
+     */
+    protected abstract File getOutputDirectory();
+
+    /**
+     * Returns all directories the compilation writes to, which are cleaned, scanned for generated files
+     * and recorded in the build manifest. Only mojos that run several generators at once have more than
+     * the {@linkplain #getOutputDirectory() output directory}.
+     *
+     * @return output directories for generated files.
+     * @since 2.2.0
+     */
+    protected List<File> getOutputDirectories() {
+        return singletonList(getOutputDirectory());
+    }
+
+    protected void doAttachFiles() {
+        if (attachProtoSources) {
+            doAttachProtoSources();
+        }
+        doAttachGeneratedFiles();
+    }
+
+    protected abstract void doAttachProtoSources();
+
+    /**
+     * Packages the proto sources, along with their {@link ProtoIndex}, into a jar.
+     *
+     * @param jarFile the jar file to create.
+     * @since 2.2.0
+     */
+    protected void packageProtoSources(final File jarFile) {
+        final ProtoIndex index = new ProtoIndex();
+        try {
+            Files.createDirectories(jarFile.getParentFile().toPath());
+            try (final JarOutputStream out = new JarOutputStream(Files.newOutputStream(jarFile.toPath()))) {
+                for (final File protoFile : findProtoFilesInSourceRoots()) {
+                    final byte[] content = Files.readAllBytes(protoFile.toPath());
+                    final String name = getProtoName(protoFile);
+                    index.put(name, ProtocBuildManifest.sha256(content));
+                    out.putNextEntry(new JarEntry(name));
+                    out.write(content);
+                    out.closeEntry();
+                }
+                final ByteArrayOutputStream indexContent = new ByteArrayOutputStream();
+                index.write(indexContent);
+                out.putNextEntry(new JarEntry(ProtoIndex.PATH));
+                out.write(indexContent.toByteArray());
+                out.closeEntry();
+            }
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to package proto sources into " + jarFile, e);
+        }
+    }
+
+    /**
+     * Writes a {@link ProtoIndex} of the proto sources into a resource directory, so that it gets packaged
+     * along with them and lets consumers extract only the files that have changed.
+     *
+     * <p>Each execution records the files of its current source roots separately, and the packaged index
+     * merges the records of all executions writing into the same directory, so that removed files
+     * drop out of the index as soon as the execution that compiled them runs again.</p>
+     *
+     * @param indexDirectory the resource directory to write the index to.
+     * @since 2.2.0
+     */
+    protected void writeProtoIndex(final File indexDirectory) {
+        final ProtoIndex executionIndex = new ProtoIndex();
+        for (final File protoFile : findProtoFilesInSourceRoots()) {
+            executionIndex.put(getProtoName(protoFile), ProtocBuildManifest.sha256(protoFile));
+        }
+        final File executionIndexDirectory = new File(indexDirectory, EXECUTION_INDEX_DIRECTORY);
+        final File executionIndexFile = new File(executionIndexDirectory, getExecutionKey());
+        if (!executionIndex.equals(ProtoIndex.read(executionIndexFile))) {
+            executionIndex.write(executionIndexFile);
+        }
+
+        final ProtoIndex index = new ProtoIndex();
+        final File[] executionIndexFiles = executionIndexDirectory.listFiles();
+        if (executionIndexFiles != null) {
+            for (final File file : executionIndexFiles) {
+                final ProtoIndex otherExecutionIndex = ProtoIndex.read(file);
+                if (otherExecutionIndex != null) {
+                    index.putAll(otherExecutionIndex);
+                }
+            }
+        }
+        final File indexFile = new File(indexDirectory, ProtoIndex.PATH);
+        if (!index.equals(ProtoIndex.read(indexFile))) {
+            index.write(indexFile);
+        }
+    }
+
+    protected abstract void doAttachGeneratedFiles();
+
+    /**
+     * Returns the dependency artifacts that are binary descriptor sets.
+     *
+     * @return a list of descriptor set artifacts.
+     * @since 2.2.0
+     */
+    protected abstract List<Artifact> getDependencyDescriptorSetArtifacts();
+
+    /**
+     * Tells whether a dependency artifact is a binary descriptor set, such as those attached
+     * by the {@code compile-descriptor-set} goal.
+     *
+     * @param artifact a dependency artifact.
+     * @return {@code true} if the artifact is a descriptor set.
+     * @since 2.2.0
+     */
+    protected static boolean isDescriptorSet(final Artifact artifact) {
+        return "pb".equals(artifact.getArtifactHandler().getExtension());
+    }
+
+    /**
+     * Gets the {@link File} for each dependency descriptor set that has been resolved.
+     *
+     * @return a list of descriptor set files.
+     * @since 2.2.0
+     */
+    protected List<File> getDependencyDescriptorSetFiles() {
+        final List<File> descriptorSetFiles = new ArrayList<>();
+        for (final Artifact artifact : getDependencyDescriptorSetArtifacts()) {
+            if (!isDependencyIncluded(artifact)) {
+                continue;
+            }
+            if (artifact.getFile() != null && artifact.getFile().isFile()) {
+                descriptorSetFiles.add(artifact.getFile());
+            } else {
+                getLog().warn("Descriptor set of " + artifact + " has not been resolved, ignoring it");
+            }
+        }
+        return descriptorSetFiles;
+    }
+
+    /**
+     * Returns the names of the files provided by the descriptor sets of dependencies.
+     *
+     * @return a set of file names.
+     */
+    private Set<String> getDescriptorSetFileNames() {
+        final Set<String> names = new HashSet<>();
+        for (final File descriptorSetFile : dependencyDescriptorSetFiles) {
+            names.addAll(DescriptorSetReader.readFileNames(descriptorSetFile));
+        }
+        return names;
+    }
+
+    /**
+     * Tells whether the definitions of a dependency are provided by one of its descriptor sets,
+     * in which case its artifact does not need to be scanned for proto files.
+     *
+     * @param artifact a dependency artifact.
+     * @return {@code true} if a descriptor set of the same project version is used.
+     */
+    private boolean isProvidedByDescriptorSet(final Artifact artifact) {
+        if (dependencyDescriptorSetFiles.isEmpty() || isDescriptorSet(artifact)) {
+            return false;
+        }
+        for (final Artifact descriptorSetArtifact : getDependencyDescriptorSetArtifacts()) {
+            if (dependencyDescriptorSetFiles.contains(descriptorSetArtifact.getFile())
+                    && descriptorSetArtifact.getGroupId().equals(artifact.getGroupId())
+                    && descriptorSetArtifact.getArtifactId().equals(artifact.getArtifactId())
+                    && descriptorSetArtifact.getVersion().equals(artifact.getVersion())) {
+                return true;
+            }
+        }
         return false;
     }
 
-    protected static List<File> findGeneratedFilesInDirectory(final File directory) {
-        if (directory == null || !directory.isDirectory()) {
+    /**
+     * Gets the {@link File} for each dependency artifact.
+     *
+     * @return A list of all dependency artifacts.
+     */
+    protected List<File> getDependencyArtifactFiles() {
+        final List<Artifact> dependencyArtifacts = getDependencyArtifacts();
+        if (dependencyArtifacts.isEmpty()) {
             return emptyList();
         }
-
-        final List<File> generatedFilesInDirectory;
-        try {
-            generatedFilesInDirectory = getFiles(directory, "**/*", getDefaultExcludesAsString());
-        } catch (final IOException e) {
-            throw new MojoInitializationException("Unable to scan output directory", e);
+        final List<File> dependencyArtifactFiles = new ArrayList<>(dependencyArtifacts.size());
+        for (final Artifact artifact : dependencyArtifacts) {
+            if (!isDependencyIncluded(artifact)) {
+                if (getLog().isDebugEnabled()) {
+                    getLog().debug("Not scanning excluded dependency " + artifact);
+                }
+                continue;
+            }
+            if (isProvidedByDescriptorSet(artifact)) {
+                if (getLog().isDebugEnabled()) {
+                    getLog().debug("Not scanning dependency " + artifact + ", using its descriptor set instead");
+                }
+                continue;
+            }
+            final File artifactFile = getPreferredArtifactFile(artifact);
+            dependencyArtifactFiles.add(artifactFile);
+            dependencyKeysByFile.put(artifactFile, artifact.getDependencyConflictId());
+            if (dependencyProtoFilters != null) {
+                for (final DependencyProtoFilter filter : dependencyProtoFilters) {
+                    if (filter.appliesTo(artifact)) {
+                        dependencyProtoFiltersByFile.put(artifactFile, filter);
+                        break;
+                    }
+                }
+            }
         }
-        return generatedFilesInDirectory;
+        return dependencyArtifactFiles;
     }
 
     /**
-     * Returns timestamp for the most recently modified file in the given set.
+     * Returns the file to scan for proto files of a dependency: the artifact with the
+     * {@link #protoArtifactClassifier} classifier, if it can be resolved with the coordinates
+     * of the dependency, or the artifact itself otherwise.
      *
-     * @param files a collection of file descriptors.
-     * @return timestamp of the most recently modified file.
+     * @param artifact a dependency artifact.
+     * @return the file to scan for proto files.
+     * @since 2.2.0
      */
-    protected static long lastModified(final Iterable<File> files) {
-        long result = 0L;
-        for (final File file : files) {
-            result = max(result, file.lastModified());
+    protected File getPreferredArtifactFile(final Artifact artifact) {
+        final File file = artifact.getFile();
+        if (!preferProtoArtifacts || file == null || artifact.hasClassifier() || !file.isFile()) {
+            return file;
+        }
+        final Artifact protoArtifact = repositorySystem.createArtifactWithClassifier(
+                artifact.getGroupId(),
+                artifact.getArtifactId(),
+                artifact.getVersion(),
+                "jar",
+                protoArtifactClassifier);
+        final ArtifactResolutionRequest request = new ArtifactResolutionRequest()
+                .setArtifact(protoArtifact)
+                .setResolveRoot(true)
+                .setResolveTransitively(false)
+                .setLocalRepository(localRepository)
+                .setRemoteRepositories(remoteRepositories)
+                .setOffline(session.isOffline())
+                .setForceUpdate(session.getRequest().isUpdateSnapshots())
+                .setServers(session.getRequest().getServers())
+                .setMirrors(session.getRequest().getMirrors())
+                .setProxies(session.getRequest().getProxies());
+        final ArtifactResolutionResult result = repositorySystem.resolve(request);
+        final File protoArtifactFile = protoArtifact.getFile();
+        if (result.isSuccess() && protoArtifactFile != null && protoArtifactFile.isFile()) {
+            if (getLog().isDebugEnabled()) {
+                getLog().debug("Using " + protoArtifactFile + " instead of " + file);
+            }
+            return protoArtifactFile;
         }
-        return result;
+        return file;
     }
 
     /**
-     * Checks that the source files don't have modification time that is later than the target files.
+     * Returns the classifier of artifacts that contain only proto definitions.
      *
-     * @param sourceFiles a collection of source files.
-     * @param targetFiles a collection of target files.
-     * @return {@code true}, if source files are not later than the target files; {@code false}, otherwise.
+     * @return the proto artifact classifier.
+     * @since 2.2.0
      */
-    protected boolean checkFilesUpToDate(final Iterable<File> sourceFiles, final Iterable<File> targetFiles) {
-        return lastModified(sourceFiles) + staleMillis < lastModified(targetFiles);
+    protected String getProtoArtifactClassifier() {
+        return protoArtifactClassifier;
     }
 
     /**
-     * Checks if the injected build context has changes in any of the specified files.
-     *
-     * @param files files to be checked for changes.
-     * @return {@code true}, if at least one file has changes; {@code false}, if no files have changes.
+     * Tells whether a dependency artifact should be scanned for proto files,
+     * according to {@link #dependencyIncludes} and {@link #dependencyExcludes}.
      *
-     * @since 0.3.0
+     * @param artifact a dependency artifact.
+     * @return {@code true} if the artifact is included and not excluded.
      */
-    protected boolean hasDelta(final Iterable<File> files) {
-        for (final File file : files) {
-            if (buildContext.hasDelta(file)) {
-                return true;
+    protected boolean isDependencyIncluded(final Artifact artifact) {
+        boolean included = dependencyIncludes == null || dependencyIncludes.length == 0;
+        if (!included) {
+            for (final String include : dependencyIncludes) {
+                if (DependencyProtoFilter.matches(include, artifact)) {
+                    included = true;
+                    break;
+                }
             }
         }
-        return false;
+        if (included && dependencyExcludes != null) {
+            for (final String exclude : dependencyExcludes) {
+                if (DependencyProtoFilter.matches(exclude, artifact)) {
+                    return false;
+                }
+            }
+        }
+        return included;
     }
 
-    protected void checkParameters() {
-        if (project == null) {
-            throw new MojoConfigurationException("'project' is null");
-        }
-        if (projectHelper == null) {
-            throw new MojoConfigurationException("'projectHelper' is null");
+    /**
+     * Unpacks proto descriptors that are bundled inside dependent artifacts into a temporary directory.
+     * This is needed because protobuf compiler cannot handle imported descriptors that are packed inside jar files.
+     * Jars that have not changed since they were last unpacked are neither opened nor extracted again.
+     *
+     * @param temporaryProtoFileDirectory temporary directory to serve as root for unpacked structure.
+     * @param classpathElementFiles classpath elements, can be either jar files or directories.
+     * @return a list of import roots for protobuf compiler
+     *         (these will all be subdirectories of the temporary directory).
+     */
+    protected List<File> makeProtoPathFromJars(
+            final File temporaryProtoFileDirectory,
+            final Iterable<File> classpathElementFiles
+    ) {
+        if (classpathElementFiles == null) {
+            throw new MojoConfigurationException("'classpathElementFiles' is null");
         }
-        final File protoSourceRoot = getProtoSourceRoot();
-        if (protoSourceRoot == null) {
-            throw new MojoConfigurationException("'protoSourceRoot' is null");
+        if (!classpathElementFiles.iterator().hasNext()) {
+            return emptyList();
         }
-        if (protoSourceRoot.isFile()) {
-            throw new MojoConfigurationException("'protoSourceRoot' is a file, not a directory");
+        final List<File> classpathElements = new ArrayList<>();
+        for (final File classpathElementFile : classpathElementFiles) {
+            classpathElements.add(classpathElementFile);
         }
-        if (temporaryProtoFileDirectory == null) {
-            throw new MojoConfigurationException("'temporaryProtoFileDirectory' is null");
+        ProtoExtractionCache cache = getSharedExtractionCache(temporaryProtoFileDirectory);
+        if (cache == null) {
+            cache = ProtoExtractionCache.read(temporaryProtoFileDirectory);
         }
-        if (temporaryProtoFileDirectory.isFile()) {
-            throw new MojoConfigurationException("'temporaryProtoFileDirectory' is a file, not a directory");
+        if (cache == null) {
+            // without a cache, clean the temporary directory to ensure that stale files aren't used
+            if (temporaryProtoFileDirectory.exists()) {
+                try {
+                    cleanDirectory(temporaryProtoFileDirectory);
+                } catch (IOException e) {
+                    throw new MojoInitializationException("Unable to clean up temporary proto file directory", e);
+                }
+            }
+            cache = ProtoExtractionCache.create(temporaryProtoFileDirectory);
+        } else {
+            for (final File jarDirectory : cache.removeUnusedJars(classpathElements, getExecutionKey())) {
+                deleteExtractedProtos(jarDirectory);
+            }
         }
-        final File outputDirectory = getOutputDirectory();
-        if (outputDirectory == null) {
-            throw new MojoConfigurationException("'outputDirectory' is null");
+        project.setContextValue(getExtractionCacheContextKey(temporaryProtoFileDirectory), cache);
+        final ProtoExtractionCache extractionCache = cache;
+        final List<File> protoDirectories = new ArrayList<>();
+        // results are collected in classpath order, so that the proto path order does not depend on scheduling
+        for (final File protoDirectory : mapInParallel(classpathElements,
+                classpathElementFile -> makeProtoPathFromClasspathElement(classpathElementFile, extractionCache))) {
+            if (protoDirectory != null) {
+                protoDirectories.add(protoDirectory);
+            }
         }
-        if (outputDirectory.isFile()) {
-            throw new MojoConfigurationException("'outputDirectory' is a file, not a directory");
+        cache.write();
+        if (mergeDependencyProtoPath) {
+            // each execution has its own merged directory, as executions may have different dependencies
+            final File mergedDirectory = new File(
+                    new File(temporaryProtoFileDirectory, MERGED_PROTOS_DIRECTORY), getExecutionKey());
+            return mergeProtoPath(protoDirectories, mergedDirectory);
         }
+        return protoDirectories;
     }
 
-    protected abstract File getProtoSourceRoot();
-
-    protected String[] getIncludes() {
-        return includes;
+    /**
+     * Returns the extraction cache left in the project by a previous execution of this build, such as
+     * the {@code compile} goal for the {@code test-compile} goal, so that the jars it has already
+     * extracted are reused without being checked again.
+     *
+     * @param temporaryProtoFileDirectory the temporary proto file directory.
+     * @return the cache, or {@code null} if no previous execution used the same directory.
+     */
+    private ProtoExtractionCache getSharedExtractionCache(final File temporaryProtoFileDirectory) {
+        final Object cache = project.getContextValue(getExtractionCacheContextKey(temporaryProtoFileDirectory));
+        // an instance from a different version of the plugin would be loaded by a different class loader
+        return cache instanceof ProtoExtractionCache ? (ProtoExtractionCache) cache : null;
     }
 
-    protected String[] getExcludes() {
-        return excludes;
+    private static String getExtractionCacheContextKey(final File temporaryProtoFileDirectory) {
+        return ProtoExtractionCache.class.getName() + ':' + temporaryProtoFileDirectory.getAbsolutePath();
     }
 
-    // TODO add artifact filtering (inclusions and exclusions)
-    // TODO add filtering for proto definitions in included artifacts
-    protected abstract List<Artifact> getDependencyArtifacts();
-
     /**
-     * Returns the output directory for generated sources. Depends on build phase so must
-     * be defined in concrete implementation.
+     * Merges the proto files of the import roots derived from dependencies into a single directory.
+     * The roots are identified by the fingerprints recorded in the extraction cache, or cached for
+     * other roots, so that the merge is skipped without reading any proto file when none of them has changed.
      *
-     * @return output directory for generated sources.
+     * @param protoDirectories the import roots, in classpath order.
+     * @param mergedDirectory the directory to merge the files into.
+     * @return a list containing the merged directory, or an empty list if there are no proto files.
      */
-    protected abstract File getOutputDirectory();
+    private List<File> mergeProtoPath(final List<File> protoDirectories, final File mergedDirectory) {
+        final StringBuilder roots = new StringBuilder();
+        for (final File protoDirectory : protoDirectories) {
+            String fingerprint = protoPathFingerprints.get(protoDirectory);
+            if (fingerprint == null) {
+                fingerprint = fingerprintUncachedProtoPathElement(protoDirectory);
+            }
+            roots.append(fingerprint).append(' ').append(protoDirectory.getAbsolutePath()).append('\n');
+        }
+        final ProtoPathMerger merger = new ProtoPathMerger(DEFAULT_INCLUDES, getLog());
+        final boolean merged = merger.merge(protoDirectories,
+                ProtocBuildManifest.sha256(roots.toString().getBytes(UTF_8)), mergedDirectory);
+        if (merger.getDuplicateCount() > 0 || merger.getConflictCount() > 0) {
+            getLog().info(format("Merged %d dependency proto path element(s): %d duplicate, %d conflicting file(s)",
+                    protoDirectories.size(), merger.getDuplicateCount(), merger.getConflictCount()));
+        }
+        return merged ? singletonList(mergedDirectory) : emptyList();
+    }
 
-    protected void doAttachFiles() {
-        if (attachProtoSources) {
-            doAttachProtoSources();
+    /**
+     * Determines the import root for a single classpath element, unpacking its proto files if it is a jar.
+     *
+     * @param classpathElementFile a jar file or a directory.
+     * @param cache the extraction cache.
+     * @return the import root, or {@code null} if the classpath element does not contain any proto files.
+     */
+    private File makeProtoPathFromClasspathElement(
+            final File classpathElementFile,
+            final ProtoExtractionCache cache
+    ) {
+        // for some reason under IAM, we receive poms as dependent files
+        // I am excluding .xml rather than including .jar as there may be other extensions in use (sar, har, zip)
+        if (classpathElementFile.isFile() && classpathElementFile.canRead() &&
+                !classpathElementFile.getName().endsWith(".xml")) {
+
+            final DependencyProtoFilter filter = dependencyProtoFiltersByFile.get(classpathElementFile);
+            // a filter yields a different set of files, which must not be mixed up with an unfiltered extraction
+            final String localDirectoryName = truncatePath(classpathElementFile.getPath()) + getFilterSuffix(filter);
+            String directoryName = cache.getDirectoryName(classpathElementFile);
+            if (sharedProtoCacheDirectory != null) {
+                if (directoryName == null || !new File(directoryName).isAbsolute()
+                        || !getSharedDirectorySuffix(directoryName).equals(getFilterSuffix(filter))) {
+                    deleteOwnedDirectory(cache, classpathElementFile);
+                    final File sharedDirectory = extractProtosToSharedStore(classpathElementFile, filter);
+                    if (sharedDirectory == null) {
+                        // record the negative result, so that the jar is neither scanned nor hashed again
+                        directoryName = new File(sharedProtoCacheDirectory, NO_PROTOS_SHARED_DIRECTORY
+                                + getFilterSuffix(filter)).getAbsolutePath();
+                        cache.put(classpathElementFile, directoryName, false, "", getExecutionKey());
+                    } else {
+                        directoryName = sharedDirectory.getAbsolutePath();
+                        cache.put(classpathElementFile, directoryName, containsFiles(sharedDirectory),
+                                fingerprintProtoFiles(sharedDirectory), getExecutionKey());
+                    }
+                } else {
+                    cache.addOwner(classpathElementFile, getExecutionKey());
+                }
+            } else if (!localDirectoryName.equals(directoryName)) {
+                directoryName = localDirectoryName;
+                final File jarDirectory = cache.resolve(directoryName);
+                if (!jarDirectory.equals(cache.getOwnedDirectory(classpathElementFile))) {
+                    deleteOwnedDirectory(cache, classpathElementFile);
+                }
+                final boolean containsProtos = extractProtos(classpathElementFile, jarDirectory, filter);
+                cache.put(classpathElementFile, directoryName, containsProtos,
+                        fingerprintProtoFiles(jarDirectory), getExecutionKey());
+            } else {
+                cache.addOwner(classpathElementFile, getExecutionKey());
+                if (getLog().isDebugEnabled()) {
+                    getLog().debug("Reusing extracted proto files of " + classpathElementFile);
+                }
+            }
+            if (!cache.containsProtos(classpathElementFile)) {
+                return null;
+            }
+            final File protoDirectory = cache.resolve(directoryName);
+            protoPathFingerprints.put(protoDirectory, cache.getFingerprint(classpathElementFile));
+            putDependencyKey(protoDirectory, classpathElementFile);
+            return protoDirectory;
+        } else if (classpathElementFile.isDirectory()) {
+            if (!containsProtoFiles(classpathElementFile)) {
+                return null;
+            }
+            putDependencyKey(classpathElementFile, classpathElementFile);
+            return classpathElementFile;
         }
-        doAttachGeneratedFiles();
+        return null;
     }
 
-    protected abstract void doAttachProtoSources();
+    private void putDependencyKey(final File protoPathElement, final File classpathElementFile) {
+        final String dependencyKey = dependencyKeysByFile.get(classpathElementFile);
+        if (dependencyKey != null) {
+            protoPathElementDependencyKeys.put(protoPathElement, dependencyKey);
+        }
+    }
 
-    protected abstract void doAttachGeneratedFiles();
+    /**
+     * Checks whether a directory contains at least one proto file, stopping at the first one found.
+     *
+     * @param directory a classpath directory.
+     * @return {@code true} if the directory contains proto files.
+     */
+    private static boolean containsProtoFiles(final File directory) {
+        try (final Stream<Path> paths = Files.walk(directory.toPath())) {
+            final Path root = directory.toPath();
+            return paths.anyMatch(path -> Files.isRegularFile(path) && SelectorUtils.matchPath(
+                    DEFAULT_INCLUDES, root.relativize(path).toString(), File.separator, true));
+        } catch (final IOException | UncheckedIOException e) {
+            throw new MojoInitializationException(
+                    "Unable to scan for proto files in: " + directory.getAbsolutePath(), e);
+        }
+    }
 
     /**
-     * Gets the {@link File} for each dependency artifact.
+     * Applies a function to all elements on a bounded thread pool.
      *
-     * @return A list of all dependency artifacts.
+     * @param elements the elements to process.
+     * @param function the function to apply.
+     * @param <T> the type of the elements.
+     * @param <R> the type of the results.
+     * @return the results, in the order of the elements.
      */
-    protected List<File> getDependencyArtifactFiles() {
-        final List<Artifact> dependencyArtifacts = getDependencyArtifacts();
-        if (dependencyArtifacts.isEmpty()) {
-            return emptyList();
+    private static <T, R> List<R> mapInParallel(final List<T> elements, final Function<T, R> function) {
+        final int threads = Math.min(elements.size(), Runtime.getRuntime().availableProcessors());
+        if (threads <= 1) {
+            return elements.stream().map(function).collect(Collectors.toList());
         }
-        final List<File> dependencyArtifactFiles = new ArrayList<>(dependencyArtifacts.size());
-        for (final Artifact artifact : dependencyArtifacts) {
-            dependencyArtifactFiles.add(artifact.getFile());
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<R>> futures = new ArrayList<>(elements.size());
+            for (final T element : elements) {
+                futures.add(executor.submit(() -> function.apply(element)));
+            }
+            final List<R> results = new ArrayList<>(elements.size());
+            for (final Future<R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new MojoInitializationException(e.getCause().getMessage(), e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoInitializationException("Interrupted while resolving dependency proto files", e);
+        } finally {
+            executor.shutdownNow();
         }
-        return dependencyArtifactFiles;
     }
 
     /**
-     * Unpacks proto descriptors that are bundled inside dependent artifacts into a temporary directory.
-     * This is needed because protobuf compiler cannot handle imported descriptors that are packed inside jar files.
+     * Unpacks only those proto descriptors from dependent artifacts that are imported by the specified files,
+     * directly or transitively.
      *
      * @param temporaryProtoFileDirectory temporary directory to serve as root for unpacked structure.
      * @param classpathElementFiles classpath elements, can be either jar files or directories.
-     * @return a list of import roots for protobuf compiler
-     *         (these will all be subdirectories of the temporary directory).
+     * @param protoFiles the files to be compiled.
+     * @return a list of import roots for protobuf compiler.
+     * @since 2.2.0
      */
-    protected List<File> makeProtoPathFromJars(
+    protected List<File> makeProtoPathFromImports(
             final File temporaryProtoFileDirectory,
-            final Iterable<File> classpathElementFiles
+            final List<File> classpathElementFiles,
+            final List<File> protoFiles
     ) {
         if (classpathElementFiles == null) {
             throw new MojoConfigurationException("'classpathElementFiles' is null");
         }
-        if (!classpathElementFiles.iterator().hasNext()) {
-            return emptyList();
+        try (final ImportClosureExtractor extractor = new ImportClosureExtractor(
+                getProtoSourceRootDirectories(), classpathElementFiles, asList(additionalProtoPathElements),
+                dependencyProtoFiltersByFile, getDescriptorSetFileNames())) {
+            final List<File> protoPath =
+                    extractor.extract(protoFiles, new File(temporaryProtoFileDirectory, IMPORTED_PROTOS_DIRECTORY));
+            if (getLog().isDebugEnabled()) {
+                getLog().debug(format("Extracted %d imported proto file(s) from dependencies",
+                        extractor.getExtractedFileCount()));
+            }
+            return protoPath;
         }
-        // clean the temporary directory to ensure that stale files aren't used
-        if (temporaryProtoFileDirectory.exists()) {
-            try {
-                cleanDirectory(temporaryProtoFileDirectory);
-            } catch (IOException e) {
-                throw new MojoInitializationException("Unable to clean up temporary proto file directory", e);
+    }
+
+    /**
+     * Extracts all proto files from a dependency jar. If the jar contains a {@link ProtoIndex}, indexed files
+     * whose hashes match those already present in the target directory are not extracted again.
+     *
+     * @param jarFile a dependency jar.
+     * @param jarDirectory the directory to extract the proto files to.
+     * @param filter restricts the extracted files, may be {@code null}.
+     * @return {@code true} if the jar contains any proto files.
+     */
+    private boolean extractProtos(final File jarFile, final File jarDirectory, final DependencyProtoFilter filter) {
+        // create the jar file. the constructor validates.
+        try (final JarFile classpathJar = new JarFile(jarFile)) {
+            final ProtoIndex index = readProtoIndex(classpathJar);
+            if (index != null) {
+                return extractIndexedProtos(classpathJar, index, jarDirectory, filter);
+            }
+            deleteExtractedProtos(jarDirectory);
+            boolean containsProtos = false;
+            final Enumeration<JarEntry> jarEntries = classpathJar.entries();
+            while (jarEntries.hasMoreElements()) {
+                final JarEntry jarEntry = jarEntries.nextElement();
+                final String jarEntryName = jarEntry.getName();
+                if (!jarEntry.isDirectory() && isExtracted(jarEntryName, filter)) {
+                    extractEntry(classpathJar, jarEntry, jarDirectory);
+                    containsProtos = true;
+                }
             }
+            return containsProtos;
+        } catch (final IOException e) {
+            throw new MojoInitializationException(
+                    "Not a readable JAR artifact: " + jarFile.getAbsolutePath(), e);
         }
-        final List<File> protoDirectories = new ArrayList<>();
-        for (final File classpathElementFile : classpathElementFiles) {
-            // for some reason under IAM, we receive poms as dependent files
-            // I am excluding .xml rather than including .jar as there may be other extensions in use (sar, har, zip)
-            if (classpathElementFile.isFile() && classpathElementFile.canRead() &&
-                    !classpathElementFile.getName().endsWith(".xml")) {
-
-                // create the jar file. the constructor validates.
-                try (final JarFile classpathJar = new JarFile(classpathElementFile)) {
-                    final Enumeration<JarEntry> jarEntries = classpathJar.entries();
-                    while (jarEntries.hasMoreElements()) {
-                        final JarEntry jarEntry = jarEntries.nextElement();
-                        final String jarEntryName = jarEntry.getName();
-                        if (!jarEntry.isDirectory() && SelectorUtils.matchPath(DEFAULT_INCLUDES, jarEntryName, "/", true)) {
-                            final File jarDirectory;
-                            try {
-                                jarDirectory = new File(temporaryProtoFileDirectory, truncatePath(classpathJar.getName()));
-                                // Check for Zip Slip vulnerability
-                                // https://snyk.io/research/zip-slip-vulnerability
-                                final String canonicalJarDirectoryPath = jarDirectory.getCanonicalPath();
-                                final File uncompressedCopy = new File(jarDirectory, jarEntryName);
-                                final String canonicalUncompressedCopyPath = uncompressedCopy.getCanonicalPath();
-                                if (!canonicalUncompressedCopyPath.startsWith(canonicalJarDirectoryPath + File.separator)) {
-                                    throw new MojoInitializationException(
-                                            "ZIP SLIP: Entry " + jarEntry.getName() +
-                                                    " in " + classpathJar.getName() + " is outside of the target dir");
-                                }
-                                FileUtils.mkdir(uncompressedCopy.getParentFile().getAbsolutePath());
-                                copyStreamToFile(
-                                        new RawInputStreamFacade(classpathJar.getInputStream(jarEntry)),
-                                        uncompressedCopy);
-                            } catch (final IOException e) {
-                                throw new MojoInitializationException("Unable to unpack proto files", e);
-                            }
-                            protoDirectories.add(jarDirectory);
-                        }
-                    }
-                } catch (final IOException e) {
-                    throw new MojoInitializationException(
-                            "Not a readable JAR artifact: " + classpathElementFile.getAbsolutePath(), e);
+    }
+
+    /**
+     * Brings the proto files previously extracted from a jar up to date with its index:
+     * indexed files with unchanged hashes are kept, other files are extracted again and obsolete files are deleted.
+     * The index only serves to skip unchanged files, so that files bundled without being indexed,
+     * e.g. by another plugin, are extracted as well.
+     */
+    private boolean extractIndexedProtos(
+            final JarFile classpathJar,
+            final ProtoIndex index,
+            final File jarDirectory,
+            final DependencyProtoFilter filter
+    ) {
+        final Map<String, String> hashes = index.getHashes();
+        final Set<File> extractedFiles = new HashSet<>();
+        final Enumeration<JarEntry> jarEntries = classpathJar.entries();
+        while (jarEntries.hasMoreElements()) {
+            final JarEntry jarEntry = jarEntries.nextElement();
+            final String name = jarEntry.getName();
+            if (jarEntry.isDirectory() || !isExtracted(name, filter)) {
+                continue;
+            }
+            final File extractedFile = new File(jarDirectory, name);
+            final String hash = hashes.get(name);
+            if (hash == null || !extractedFile.isFile() || !hash.equals(ProtocBuildManifest.sha256(extractedFile))) {
+                extractEntry(classpathJar, jarEntry, jarDirectory);
+            }
+            extractedFiles.add(extractedFile.getAbsoluteFile());
+        }
+        if (jarDirectory.isDirectory()) {
+            for (final File file : findGeneratedFilesInDirectory(jarDirectory)) {
+                if (!extractedFiles.contains(file.getAbsoluteFile())) {
+                    FileUtils.fileDelete(file.getAbsolutePath());
+                }
+            }
+        }
+        return !extractedFiles.isEmpty();
+    }
+
+    private static ProtoIndex readProtoIndex(final JarFile classpathJar) throws IOException {
+        final JarEntry indexEntry = classpathJar.getJarEntry(ProtoIndex.PATH);
+        if (indexEntry == null) {
+            return null;
+        }
+        try (final InputStream in = classpathJar.getInputStream(indexEntry)) {
+            return ProtoIndex.read(in);
+        }
+    }
+
+    private static boolean isExtracted(final String jarEntryName, final DependencyProtoFilter filter) {
+        return SelectorUtils.matchPath(DEFAULT_INCLUDES, jarEntryName, "/", true)
+                && (filter == null || filter.isIncluded(jarEntryName));
+    }
+
+    private static void extractEntry(final JarFile classpathJar, final JarEntry jarEntry, final File jarDirectory) {
+        try {
+            // Check for Zip Slip vulnerability
+            // https://snyk.io/research/zip-slip-vulnerability
+            final String canonicalJarDirectoryPath = jarDirectory.getCanonicalPath();
+            final File uncompressedCopy = new File(jarDirectory, jarEntry.getName());
+            final String canonicalUncompressedCopyPath = uncompressedCopy.getCanonicalPath();
+            if (!canonicalUncompressedCopyPath.startsWith(canonicalJarDirectoryPath + File.separator)) {
+                throw new MojoInitializationException(
+                        "ZIP SLIP: Entry " + jarEntry.getName() +
+                                " in " + classpathJar.getName() + " is outside of the target dir");
+            }
+            FileUtils.mkdir(uncompressedCopy.getParentFile().getAbsolutePath());
+            copyStreamToFile(
+                    new RawInputStreamFacade(classpathJar.getInputStream(jarEntry)),
+                    uncompressedCopy);
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to unpack proto files", e);
+        }
+    }
+
+    /**
+     * Extracts all proto files from a dependency jar into the shared store, unless they have already been
+     * extracted by this or another build. The files are extracted into a temporary directory first, which
+     * is then atomically renamed, so that concurrent builds never see partially extracted files.
+     * Jars without proto files are neither hashed nor given a directory in the store.
+     *
+     * @param jarFile a dependency jar.
+     * @param filter restricts the extracted files, may be {@code null}.
+     * @return the directory in the shared store that contains the proto files of the jar,
+     *         or {@code null} if the jar does not contain any proto files.
+     */
+    private File extractProtosToSharedStore(final File jarFile, final DependencyProtoFilter filter) {
+        if (!containsExtractedEntries(jarFile, filter)) {
+            return null;
+        }
+        final File sharedDirectory = new File(sharedProtoCacheDirectory,
+                ProtocBuildManifest.sha256(jarFile) + getFilterSuffix(filter));
+        if (sharedDirectory.isDirectory()) {
+            return sharedDirectory;
+        }
+        final Path temporaryDirectory;
+        try {
+            Files.createDirectories(sharedProtoCacheDirectory.toPath());
+            if (sharedProtoCacheSwept.compareAndSet(false, true)) {
+                deleteStaleSharedTemporaryDirectories();
+            }
+            temporaryDirectory = Files.createTempDirectory(
+                    sharedProtoCacheDirectory.toPath(), "." + sharedDirectory.getName() + "-");
+        } catch (final IOException e) {
+            throw new MojoInitializationException(
+                    "Unable to create a directory in shared proto cache " + sharedProtoCacheDirectory, e);
+        }
+        extractProtos(jarFile, temporaryDirectory.toFile(), filter);
+        try {
+            Files.move(temporaryDirectory, sharedDirectory.toPath(), ATOMIC_MOVE);
+        } catch (final IOException e) {
+            // another build has extracted the same jar in the meantime
+            deleteExtractedProtos(temporaryDirectory.toFile());
+            if (!sharedDirectory.isDirectory()) {
+                throw new MojoInitializationException(
+                        "Unable to store extracted proto files in " + sharedDirectory, e);
+            }
+        }
+        return sharedDirectory;
+    }
+
+    /**
+     * Tells whether a jar contains any file that would be extracted, reading only its central directory.
+     */
+    private boolean containsExtractedEntries(final File jarFile, final DependencyProtoFilter filter) {
+        try (final JarFile classpathJar = new JarFile(jarFile)) {
+            final Enumeration<JarEntry> jarEntries = classpathJar.entries();
+            while (jarEntries.hasMoreElements()) {
+                final JarEntry jarEntry = jarEntries.nextElement();
+                if (!jarEntry.isDirectory() && isExtracted(jarEntry.getName(), filter)) {
+                    return true;
                 }
-            } else if (classpathElementFile.isDirectory()) {
-                final List<String> protoFiles;
+            }
+            return false;
+        } catch (final IOException e) {
+            throw new MojoInitializationException(
+                    "Not a readable JAR artifact: " + jarFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Deletes the temporary directories left in the shared store by builds that crashed while extracting a jar.
+     * Recent directories are kept, as they may belong to a concurrent build that is still extracting.
+     */
+    private void deleteStaleSharedTemporaryDirectories() {
+        final File[] files = sharedProtoCacheDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        final long staleBefore = System.currentTimeMillis() - STALE_SHARED_TEMPORARY_DIRECTORY_AGE_MILLIS;
+        for (final File file : files) {
+            if (file.getName().startsWith(".") && file.isDirectory() && file.lastModified() < staleBefore) {
                 try {
-                    protoFiles = getFileNames(classpathElementFile, DEFAULT_INCLUDES, null, true);
+                    FileUtils.deleteDirectory(file);
+                    getLog().debug("Deleted stale temporary directory " + file);
                 } catch (final IOException e) {
-                    throw new MojoInitializationException(
-                            "Unable to scan for proto files in: " + classpathElementFile.getAbsolutePath(), e);
-                }
-                if (!protoFiles.isEmpty()) {
-                    protoDirectories.add(classpathElementFile);
+                    // another build may be deleting it as well
+                    getLog().debug("Unable to delete stale temporary directory " + file, e);
                 }
             }
         }
-        return protoDirectories;
+    }
+
+    private static String getFilterSuffix(final DependencyProtoFilter filter) {
+        return filter == null ? "" : "-" + md5Hash(filter.toString());
+    }
+
+    private static String getSharedDirectorySuffix(final String sharedDirectoryName) {
+        // shared directories are named after the hexadecimal hash of the jar, followed by the filter suffix
+        final String name = new File(sharedDirectoryName).getName();
+        final int separator = name.indexOf('-');
+        return separator == -1 ? "" : name.substring(separator);
+    }
+
+    private static boolean containsFiles(final File directory) {
+        final String[] names = directory.list();
+        return names != null && names.length > 0;
+    }
+
+    private static void deleteOwnedDirectory(final ProtoExtractionCache cache, final File jarFile) {
+        final File previousDirectory = cache.getOwnedDirectory(jarFile);
+        if (previousDirectory != null) {
+            deleteExtractedProtos(previousDirectory);
+        }
+    }
+
+    private static void deleteExtractedProtos(final File jarDirectory) {
+        try {
+            FileUtils.deleteDirectory(jarDirectory);
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to delete extracted proto files in " + jarDirectory, e);
+        }
     }
 
     protected List<File> findProtoFilesInDirectory(final File directory) {
@@ -911,14 +2885,15 @@ abstract class AbstractProtocMojo extends AbstractMojo {
         if (!directory.isDirectory()) {
             throw new MojoConfigurationException(format("%s is not a directory", directory));
         }
-        final List<File> protoFilesInDirectory;
-        try {
-            final String includes = join(getIncludes(), ",");
-            final String excludes = join(getExcludes(), ",");
-            protoFilesInDirectory = getFiles(directory, includes, excludes);
-        } catch (IOException e) {
-            throw new MojoInitializationException("Unable to retrieve the list of files: " + e.getMessage(), e);
-        }
+        return findProtoFilesInDirectory(directory, getIncludes(), getExcludes());
+    }
+
+    private List<File> findProtoFilesInDirectory(
+            final File directory,
+            final String[] includes,
+            final String[] excludes
+    ) {
+        final List<File> protoFilesInDirectory = new SourceFileScanner(includes, excludes).scan(directory);
         if(sortProtoFiles) {
             return sortProtoFiles(protoFilesInDirectory);
         } else {
@@ -926,6 +2901,24 @@ abstract class AbstractProtocMojo extends AbstractMojo {
         }
     }
 
+    /**
+     * Finds the files to compile in all existing source roots, each with its own include and exclude patterns.
+     * The files of each root are sorted separately, and follow those of the previous roots.
+     *
+     * @return the files to compile.
+     * @since 2.2.0
+     */
+    protected List<File> findProtoFilesInSourceRoots() {
+        final List<File> protoFiles = new ArrayList<>();
+        for (final ProtoSourceRoot protoSourceRoot : getProtoSourceRoots()) {
+            if (protoSourceRoot.getDirectory().isDirectory()) {
+                protoFiles.addAll(findProtoFilesInDirectory(protoSourceRoot.getDirectory(),
+                        getIncludes(protoSourceRoot), getExcludes(protoSourceRoot)));
+            }
+        }
+        return protoFiles;
+    }
+
     protected List<File> findProtoFilesInDirectories(final Iterable<File> directories) {
         if (directories == null) {
             throw new MojoConfigurationException("'directories' is null");
@@ -956,20 +2949,17 @@ abstract class AbstractProtocMojo extends AbstractMojo {
      * @return the sorted list
      */
     protected List<File> sortProtoFiles(final List<File> unsortedFiles) {
-        return unsortedFiles.stream().sorted((aFirst, aSecond) -> {
-            final Path first = aFirst.getAbsoluteFile().toPath();
-            final Path firstParent = first.getParent();
-            final Path second = aSecond.getAbsoluteFile().toPath();
-            final Path secondParent = second.getParent();
-
-            // In case of equal parent directories, compare the file names
-            if(firstParent.equals(secondParent)) {
-                return first.getFileName().compareTo(second.getFileName());
-            } else {
-                // For different parent directories, sort parents lexicographically
-                return firstParent.compareTo(secondParent);
-            }
-        }).collect(Collectors.toList());
+        // the sort keys are derived once per file, rather than in every comparison
+        final Map<File, Path> absolutePaths = new HashMap<>();
+        for (final File file : unsortedFiles) {
+            absolutePaths.put(file, file.getAbsoluteFile().toPath());
+        }
+        // For different parent directories, sort parents lexicographically,
+        // and in case of equal parent directories, compare the file names
+        final Comparator<File> comparator = Comparator
+                .comparing((File file) -> absolutePaths.get(file).getParent())
+                .thenComparing(file -> absolutePaths.get(file).getFileName());
+        return unsortedFiles.stream().sorted(comparator).collect(Collectors.toList());
     }
 
     /**
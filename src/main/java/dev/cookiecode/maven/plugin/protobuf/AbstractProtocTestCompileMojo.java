@@ -20,9 +20,12 @@ import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugins.annotations.Parameter;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 
 /**
  * An abstract base mojo configuration for using {@code protoc} compiler with the test sources.
@@ -40,17 +43,67 @@ public abstract class AbstractProtocTestCompileMojo extends AbstractProtocMojo {
     )
     private File protoTestSourceRoot;
 
+    /**
+     * If set to {@code true}, test definitions import the main definitions from the proto source roots
+     * and the dependency extraction directories of the main compilation goals, rather than from the
+     * build output directory, which may hold a large number of class files that {@code protoc}
+     * would have to search.
+     *
+     * <p>The import roots are recorded by the main compilation goals of the same build. If none have been
+     * recorded, e.g. because the main definitions are compiled by another plugin, the build output directory
+     * is used regardless.</p>
+     *
+     * @since 2.2.0
+     */
+    @Parameter(
+            required = false,
+            property = "protoc.importMainProtosFromSourceRoots",
+            defaultValue = "false"
+    )
+    private boolean importMainProtosFromSourceRoots;
+
     @Override
     protected void doAttachProtoSources() {
-        projectHelper.addTestResource(project, getProtoSourceRoot().getAbsolutePath(),
-                asList(getIncludes()), asList(getExcludes()));
+        for (final ProtoSourceRoot protoSourceRoot : getProtoSourceRoots()) {
+            projectHelper.addTestResource(project, protoSourceRoot.getDirectory().getAbsolutePath(),
+                    asList(getIncludes(protoSourceRoot)), asList(getExcludes(protoSourceRoot)));
+        }
+        final File indexDirectory = new File(project.getBuild().getDirectory(), "protoc-test-index");
+        writeProtoIndex(indexDirectory);
+        projectHelper.addTestResource(project, indexDirectory.getAbsolutePath(),
+                singletonList(ProtoIndex.PATH), emptyList());
     }
 
     @Override
     protected void doAttachGeneratedFiles() {
         final File outputDirectory = getOutputDirectory();
         project.addTestCompileSourceRoot(outputDirectory.getAbsolutePath());
-        buildContext.refresh(outputDirectory);
+        refreshGeneratedFiles(outputDirectory);
+    }
+
+    /**
+     * Adds the import roots of the main definitions to the proto path,
+     * so that test definitions can extend or depend on them.
+     *
+     * @param protocBuilder the {@code protoc} invocation builder.
+     * @since 2.2.0
+     */
+    protected void addMainProtoPathElements(final Protoc.Builder protocBuilder) {
+        protocBuilder.addProtoPathElements(getMainProtoPathElements());
+    }
+
+    private List<File> getMainProtoPathElements() {
+        if (importMainProtosFromSourceRoots) {
+            final List<File> mainProtoPathElements =
+                    MainProtoPath.read(new File(project.getBuild().getDirectory(), MainProtoPath.DIRECTORY));
+            if (mainProtoPathElements != null) {
+                return mainProtoPathElements;
+            }
+            getLog().debug("No import roots recorded by the main compilation, importing main definitions "
+                    + "from the build output directory");
+        }
+        final File buildOutputDirectory = new File(project.getBuild().getOutputDirectory());
+        return buildOutputDirectory.exists() ? singletonList(buildOutputDirectory) : emptyList();
     }
 
     @Override
@@ -58,6 +111,17 @@ public abstract class AbstractProtocTestCompileMojo extends AbstractProtocMojo {
         return project.getTestArtifacts();
     }
 
+    @Override
+    protected List<Artifact> getDependencyDescriptorSetArtifacts() {
+        final List<Artifact> descriptorSetArtifacts = new ArrayList<>();
+        for (final Artifact artifact : project.getArtifacts()) {
+            if (isDescriptorSet(artifact)) {
+                descriptorSetArtifacts.add(artifact);
+            }
+        }
+        return descriptorSetArtifacts;
+    }
+
     @Override
     protected File getProtoSourceRoot() {
         return protoTestSourceRoot;
@@ -0,0 +1,151 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.artifact.Artifact;
+import org.codehaus.plexus.util.SelectorUtils;
+
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Restricts the proto files that are extracted from the dependency artifacts matching a pattern.
+ * The state is populated from the Maven plugin's configuration.
+ *
+ * @since 2.2.0
+ */
+public class DependencyProtoFilter {
+
+    private static final int PATTERN_SEGMENTS = 5;
+
+    private String artifact;
+
+    private List<String> includes;
+
+    private List<String> excludes;
+
+    /**
+     * Returns the pattern of the artifacts this filter applies to, in the form
+     * {@code groupId:artifactId[:type[:classifier[:scope]]]}.
+     *
+     * @return the artifact pattern.
+     */
+    public String getArtifact() {
+        return artifact;
+    }
+
+    /**
+     * Returns the patterns of the proto files to extract, relative to the root of the artifact.
+     * When empty, all proto files are extracted.
+     *
+     * @return a list of include patterns.
+     */
+    public List<String> getIncludes() {
+        return includes != null ? includes : emptyList();
+    }
+
+    /**
+     * Returns the patterns of the proto files not to extract, relative to the root of the artifact.
+     *
+     * @return a list of exclude patterns.
+     */
+    public List<String> getExcludes() {
+        return excludes != null ? excludes : emptyList();
+    }
+
+    /**
+     * Validate the state of this filter specification.
+     */
+    public void validate() {
+        if (artifact == null) {
+            throw new MojoConfigurationException("artifact must be set in dependencyProtoFilter definition");
+        }
+    }
+
+    /**
+     * Tells whether this filter applies to the specified artifact.
+     *
+     * @param candidate a dependency artifact.
+     * @return {@code true} if the artifact matches the pattern of this filter.
+     */
+    boolean appliesTo(final Artifact candidate) {
+        return matches(artifact, candidate);
+    }
+
+    /**
+     * Tells whether a proto file should be extracted.
+     *
+     * @param path the path of the proto file, relative to the root of the artifact, using {@code /} separators.
+     * @return {@code true} if the file is included and not excluded.
+     */
+    boolean isIncluded(final String path) {
+        boolean included = getIncludes().isEmpty();
+        for (final String include : getIncludes()) {
+            if (SelectorUtils.matchPath(include, path, "/", true)) {
+                included = true;
+                break;
+            }
+        }
+        if (included) {
+            for (final String exclude : getExcludes()) {
+                if (SelectorUtils.matchPath(exclude, path, "/", true)) {
+                    return false;
+                }
+            }
+        }
+        return included;
+    }
+
+    /**
+     * Matches an artifact against a pattern in the form {@code groupId:artifactId[:type[:classifier[:scope]]]}.
+     * Each segment may contain {@code *} and {@code ?} wildcards, and omitted segments match anything.
+     *
+     * @param pattern an artifact pattern.
+     * @param candidate an artifact.
+     * @return {@code true} if the artifact matches the pattern.
+     */
+    static boolean matches(final String pattern, final Artifact candidate) {
+        final String[] segments = pattern.trim().split(":", -1);
+        if (segments.length > PATTERN_SEGMENTS) {
+            throw new MojoConfigurationException("Invalid artifact pattern: " + pattern);
+        }
+        final String[] values = {
+                candidate.getGroupId(),
+                candidate.getArtifactId(),
+                candidate.getType(),
+                candidate.getClassifier(),
+                candidate.getScope()
+        };
+        for (int i = 0; i < segments.length; i++) {
+            final String value = values[i] != null ? values[i] : "";
+            if (!SelectorUtils.match(segments[i], value, true)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "DependencyProtoFilter{" +
+                "artifact='" + artifact + '\'' +
+                ", includes=" + includes +
+                ", excludes=" + excludes +
+                '}';
+    }
+}
@@ -0,0 +1,205 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads the names of the files described by a binary {@code FileDescriptorSet}, as written by
+ * {@code protoc --descriptor_set_out}, and merges descriptor sets. Only the few fields needed for that
+ * are decoded, so that the plugin does not need to depend on the protobuf runtime.
+ *
+ * @since 2.2.0
+ */
+final class DescriptorSetReader {
+
+    /**
+     * Field number of {@code FileDescriptorSet.file}.
+     */
+    private static final int FILE_FIELD = 1;
+
+    /**
+     * Field number of {@code FileDescriptorProto.name}.
+     */
+    private static final int NAME_FIELD = 1;
+
+    private static final int WIRE_TYPE_VARINT = 0;
+
+    private static final int WIRE_TYPE_FIXED64 = 1;
+
+    private static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+
+    private static final int WIRE_TYPE_FIXED32 = 5;
+
+    private final byte[] buffer;
+
+    private int position;
+
+    private DescriptorSetReader(final byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Reads the names of the {@code .proto} files described by a descriptor set.
+     *
+     * @param descriptorSetFile a binary {@code FileDescriptorSet}.
+     * @return the names of the described files, in the order they appear in the set.
+     * @throws MojoInitializationException if the file cannot be read or is not a valid descriptor set.
+     */
+    static List<String> readFileNames(final File descriptorSetFile) {
+        final byte[] content;
+        try {
+            content = Files.readAllBytes(descriptorSetFile.toPath());
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to read descriptor set " + descriptorSetFile, e);
+        }
+        try {
+            return new DescriptorSetReader(content).readFileNames(content.length);
+        } catch (final IllegalStateException | ArrayIndexOutOfBoundsException e) {
+            throw new MojoInitializationException("Not a valid descriptor set: " + descriptorSetFile, e);
+        }
+    }
+
+    /**
+     * Merges descriptor sets into a single one, keeping the first description of each file.
+     * The files are kept in their original order, so that dependencies still precede the files using them.
+     *
+     * @param descriptorSetFiles binary {@code FileDescriptorSet} files.
+     * @param mergedFile the file to write the merged descriptor set to.
+     * @throws MojoInitializationException if a descriptor set cannot be read or the result cannot be written.
+     */
+    static void merge(final List<File> descriptorSetFiles, final File mergedFile) {
+        final Set<String> names = new HashSet<>();
+        final ByteArrayOutputStream merged = new ByteArrayOutputStream();
+        for (final File descriptorSetFile : descriptorSetFiles) {
+            final byte[] content;
+            try {
+                content = Files.readAllBytes(descriptorSetFile.toPath());
+            } catch (final IOException e) {
+                throw new MojoInitializationException("Unable to read descriptor set " + descriptorSetFile, e);
+            }
+            final DescriptorSetReader reader = new DescriptorSetReader(content);
+            try {
+                while (reader.position < content.length) {
+                    final int fieldStart = reader.position;
+                    final int tag = (int) reader.readVarint();
+                    if (tag >>> 3 == FILE_FIELD && (tag & 7) == WIRE_TYPE_LENGTH_DELIMITED) {
+                        final int fileEnd = reader.readLength();
+                        final String name = reader.readName(fileEnd);
+                        reader.position = fileEnd;
+                        if (name != null && !names.add(name)) {
+                            continue;
+                        }
+                    } else {
+                        reader.skipField(tag);
+                    }
+                    merged.write(content, fieldStart, reader.position - fieldStart);
+                }
+            } catch (final IllegalStateException | ArrayIndexOutOfBoundsException e) {
+                throw new MojoInitializationException("Not a valid descriptor set: " + descriptorSetFile, e);
+            }
+        }
+        try {
+            Files.write(mergedFile.toPath(), merged.toByteArray());
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to write descriptor set " + mergedFile, e);
+        }
+    }
+
+    private List<String> readFileNames(final int end) {
+        final List<String> names = new ArrayList<>();
+        while (position < end) {
+            final int tag = (int) readVarint();
+            if (tag >>> 3 == FILE_FIELD && (tag & 7) == WIRE_TYPE_LENGTH_DELIMITED) {
+                final int fileEnd = readLength();
+                final String name = readName(fileEnd);
+                if (name != null) {
+                    names.add(name);
+                }
+                position = fileEnd;
+            } else {
+                skipField(tag);
+            }
+        }
+        return names;
+    }
+
+    private String readName(final int end) {
+        while (position < end) {
+            final int tag = (int) readVarint();
+            if (tag >>> 3 == NAME_FIELD && (tag & 7) == WIRE_TYPE_LENGTH_DELIMITED) {
+                final int nameEnd = readLength();
+                return new String(buffer, position, nameEnd - position, UTF_8);
+            }
+            skipField(tag);
+        }
+        return null;
+    }
+
+    private void skipField(final int tag) {
+        switch (tag & 7) {
+            case WIRE_TYPE_VARINT:
+                readVarint();
+                break;
+            case WIRE_TYPE_FIXED64:
+                position += 8;
+                break;
+            case WIRE_TYPE_LENGTH_DELIMITED:
+                position = readLength();
+                break;
+            case WIRE_TYPE_FIXED32:
+                position += 4;
+                break;
+            default:
+                throw new IllegalStateException("Unsupported wire type " + (tag & 7));
+        }
+    }
+
+    /**
+     * Reads a length prefix.
+     *
+     * @return the position of the end of the length-delimited value.
+     */
+    private int readLength() {
+        final long length = readVarint();
+        if (length < 0 || position + length > buffer.length) {
+            throw new IllegalStateException("Truncated value");
+        }
+        return (int) (position + length);
+    }
+
+    private long readVarint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = buffer[position++];
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+}
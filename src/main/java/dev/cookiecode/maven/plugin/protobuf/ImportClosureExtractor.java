@@ -0,0 +1,271 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Extracts from dependency jars only those proto files that are reachable through the imports
+ * of the compiled files, instead of every proto file that the jars contain.
+ *
+ * <p>Imports are resolved in the same order as {@code protoc} searches its proto path: the proto source roots,
+ * then the dependencies in classpath order, then the additional proto path elements and finally the descriptor sets
+ * of dependencies. Files found in descriptor sets are neither extracted nor scanned, as the descriptor sets
+ * are expected to include their imports.</p>
+ *
+ * @since 2.2.0
+ */
+final class ImportClosureExtractor implements Closeable {
+
+    private final List<File> protoSourceRoots;
+
+    private final List<File> classpathElements;
+
+    private final List<File> additionalProtoPathElements;
+
+    private final Map<File, DependencyProtoFilter> filters;
+
+    private final Set<String> descriptorSetFileNames;
+
+    private final Map<File, JarFile> jars = new HashMap<>();
+
+    private int extractedFileCount;
+
+    /**
+     * Creates an extractor.
+     *
+     * @param protoSourceRoots the proto source roots.
+     * @param classpathElements dependency jars and directories, in classpath order.
+     * @param additionalProtoPathElements additional proto path elements.
+     * @param filters restrict the files that may be extracted from a dependency jar.
+     * @param descriptorSetFileNames names of the files provided by dependency descriptor sets,
+     *                               which are searched after the proto path.
+     */
+    ImportClosureExtractor(
+            final List<File> protoSourceRoots,
+            final List<File> classpathElements,
+            final List<File> additionalProtoPathElements,
+            final Map<File, DependencyProtoFilter> filters,
+            final Set<String> descriptorSetFileNames
+    ) {
+        this.protoSourceRoots = protoSourceRoots;
+        this.classpathElements = new ArrayList<>();
+        for (final File classpathElement : classpathElements) {
+            // poms are skipped for the same reason as in AbstractProtocMojo#makeProtoPathFromJars
+            if (classpathElement.isDirectory()
+                    || classpathElement.isFile() && classpathElement.canRead()
+                    && !classpathElement.getName().endsWith(".xml")) {
+                this.classpathElements.add(classpathElement);
+            }
+        }
+        this.additionalProtoPathElements = additionalProtoPathElements;
+        this.filters = filters;
+        this.descriptorSetFileNames = descriptorSetFileNames;
+    }
+
+    /**
+     * Resolves the transitive imports of the specified files and extracts those found in dependency jars.
+     *
+     * @param protoFiles the files to be compiled.
+     * @param targetDirectory the directory to extract imported files to; its previous content is deleted.
+     * @return a list of import roots for protobuf compiler: the target directory, if anything has been
+     *         extracted, followed by the dependency directories that provide imported files.
+     * @throws MojoConfigurationException if an import cannot be resolved.
+     */
+    List<File> extract(final List<File> protoFiles, final File targetDirectory) {
+        try {
+            FileUtils.deleteDirectory(targetDirectory);
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to clean up " + targetDirectory, e);
+        }
+        extractedFileCount = 0;
+
+        final Map<String, String> importers = new LinkedHashMap<>();
+        final Deque<String> queue = new ArrayDeque<>();
+        for (final File protoFile : protoFiles) {
+            enqueueImports(readFile(protoFile), protoFile.getPath(), importers, queue);
+        }
+        final Set<File> usedDirectories = new LinkedHashSet<>();
+        while (!queue.isEmpty()) {
+            final String name = queue.poll();
+            final byte[] content = resolve(name, targetDirectory, usedDirectories);
+            if (content == null) {
+                throw new MojoConfigurationException(format(
+                        "Unable to resolve import \"%s\" of %s in the proto source root, dependencies"
+                                + " or additional proto path elements", name, importers.get(name)));
+            }
+            enqueueImports(content, name, importers, queue);
+        }
+
+        final List<File> protoPath = new ArrayList<>();
+        if (extractedFileCount > 0) {
+            protoPath.add(targetDirectory);
+        }
+        for (final File classpathElement : classpathElements) {
+            if (usedDirectories.contains(classpathElement)) {
+                protoPath.add(classpathElement);
+            }
+        }
+        return protoPath;
+    }
+
+    /**
+     * Returns the number of files extracted by the last call to {@link #extract(List, File)}.
+     *
+     * @return the number of extracted files.
+     */
+    int getExtractedFileCount() {
+        return extractedFileCount;
+    }
+
+    @Override
+    public void close() {
+        for (final JarFile jar : jars.values()) {
+            try {
+                jar.close();
+            } catch (final IOException e) {
+                // ignore, the jar has only been read
+            }
+        }
+        jars.clear();
+    }
+
+    private static void enqueueImports(
+            final byte[] content,
+            final String importer,
+            final Map<String, String> importers,
+            final Deque<String> queue
+    ) {
+        for (final String importedName : ProtoImportScanner.scanImports(new String(content, UTF_8))) {
+            if (importers.putIfAbsent(importedName, importer) == null) {
+                queue.add(importedName);
+            }
+        }
+    }
+
+    /**
+     * Finds an imported file on the proto path and extracts it, if it comes from a jar.
+     *
+     * @param name the name of the imported file.
+     * @param targetDirectory the directory to extract the file to.
+     * @param usedDirectories collects dependency directories that provide imported files.
+     * @return the content of the file, which is empty if the file is provided by a descriptor set,
+     *         or {@code null} if it cannot be found.
+     */
+    private byte[] resolve(final String name, final File targetDirectory, final Set<File> usedDirectories) {
+        for (final File protoSourceRoot : protoSourceRoots) {
+            final File sourceFile = new File(protoSourceRoot, name);
+            if (sourceFile.isFile()) {
+                return readFile(sourceFile);
+            }
+        }
+        for (final File classpathElement : classpathElements) {
+            if (classpathElement.isDirectory()) {
+                final File file = new File(classpathElement, name);
+                if (file.isFile()) {
+                    usedDirectories.add(classpathElement);
+                    return readFile(file);
+                }
+            } else {
+                final DependencyProtoFilter filter = filters.get(classpathElement);
+                if (filter != null && !filter.isIncluded(name)) {
+                    continue;
+                }
+                final JarFile jar = openJar(classpathElement);
+                final JarEntry entry = jar.getJarEntry(name);
+                if (entry != null && !entry.isDirectory()) {
+                    final byte[] content;
+                    try (final InputStream in = jar.getInputStream(entry)) {
+                        content = IOUtil.toByteArray(in);
+                    } catch (final IOException e) {
+                        throw new MojoInitializationException(
+                                "Unable to read " + name + " from " + classpathElement.getAbsolutePath(), e);
+                    }
+                    writeFile(targetDirectory, name, content);
+                    extractedFileCount++;
+                    return content;
+                }
+            }
+        }
+        for (final File additionalProtoPathElement : additionalProtoPathElements) {
+            final File file = new File(additionalProtoPathElement, name);
+            if (file.isFile()) {
+                return readFile(file);
+            }
+        }
+        return descriptorSetFileNames.contains(name) ? new byte[0] : null;
+    }
+
+    private JarFile openJar(final File jarFile) {
+        JarFile jar = jars.get(jarFile);
+        if (jar == null) {
+            try {
+                jar = new JarFile(jarFile);
+            } catch (final IOException e) {
+                throw new MojoInitializationException(
+                        "Not a readable JAR artifact: " + jarFile.getAbsolutePath(), e);
+            }
+            jars.put(jarFile, jar);
+        }
+        return jar;
+    }
+
+    private static byte[] readFile(final File file) {
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to read " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private static void writeFile(final File targetDirectory, final String name, final byte[] content) {
+        try {
+            // Check for Zip Slip vulnerability, import names are as untrusted as jar entry names
+            // https://snyk.io/research/zip-slip-vulnerability
+            final File file = new File(targetDirectory, name);
+            if (!file.getCanonicalPath().startsWith(targetDirectory.getCanonicalPath() + File.separator)) {
+                throw new MojoInitializationException(
+                        "ZIP SLIP: Import " + name + " is outside of the target dir");
+            }
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), content);
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to unpack proto file " + name, e);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.disjoint;
+import static java.util.Collections.emptyList;
+
+/**
+ * Decides which {@code .proto} files need to be recompiled and which generated files became obsolete,
+ * by comparing the build manifest of the last successful run with the current one.
+ *
+ * <p>A source file is stale when it was added or its content has changed, or when it imports
+ * (directly or transitively) a file that was added, changed or removed. Generated files produced from stale
+ * or removed sources are obsolete and must be deleted before recompilation; if such a file was produced
+ * from several sources, all of them are recompiled so that the shared output is regenerated.</p>
+ *
+ * @since 2.2.0
+ */
+final class IncrementalBuildPlan {
+
+    /**
+     * Matches the reference to the source definition that generators put into the header of generated files,
+     * e.g. {@code // source: foo/bar.proto} for Java, C++ and C#, or {@code # source: foo/bar.proto} for Python.
+     */
+    private static final Pattern SOURCE_REFERENCE_PATTERN =
+            Pattern.compile("(?i)\\bsource:\\s*([^\\s\"]+\\.proto)\\b");
+
+    /**
+     * Number of bytes to read from the beginning of a generated file when looking for its source reference.
+     */
+    private static final int HEADER_SIZE = 2048;
+
+    private final Set<File> staleSources;
+
+    private final Set<File> removedSources;
+
+    private final Set<File> obsoleteOutputs;
+
+    private final Map<File, Set<File>> retainedOutputs;
+
+    private final boolean fullRebuild;
+
+    private IncrementalBuildPlan(
+            final Set<File> staleSources,
+            final Set<File> removedSources,
+            final Set<File> obsoleteOutputs,
+            final Map<File, Set<File>> retainedOutputs,
+            final boolean fullRebuild
+    ) {
+        this.staleSources = staleSources;
+        this.removedSources = removedSources;
+        this.obsoleteOutputs = obsoleteOutputs;
+        this.retainedOutputs = retainedOutputs;
+        this.fullRebuild = fullRebuild;
+    }
+
+    /**
+     * Creates a plan for bringing the outputs of the previous run up to date with the current sources.
+     *
+     * @param previous the manifest of the last successful run.
+     * @param current the manifest describing the current sources and configuration.
+     * @param protoNames resolves a source file to its name relative to the proto path.
+     * @return the incremental build plan.
+     */
+    static IncrementalBuildPlan create(
+            final ProtocBuildManifest previous,
+            final ProtocBuildManifest current,
+            final Function<File, String> protoNames
+    ) {
+        final Map<File, String> previousHashes = previous.getSourceHashes();
+        final Map<File, String> currentHashes = current.getSourceHashes();
+
+        final Set<File> staleSources = new LinkedHashSet<>();
+        final Set<String> changedNames = new LinkedHashSet<>();
+        for (final Map.Entry<File, String> entry : currentHashes.entrySet()) {
+            if (!entry.getValue().equals(previousHashes.get(entry.getKey()))) {
+                staleSources.add(entry.getKey());
+                changedNames.add(protoNames.apply(entry.getKey()));
+            }
+        }
+        final Set<File> removedSources = new LinkedHashSet<>();
+        for (final File previousSource : previousHashes.keySet()) {
+            if (!currentHashes.containsKey(previousSource)) {
+                removedSources.add(previousSource);
+                changedNames.add(protoNames.apply(previousSource));
+            }
+        }
+
+        // Propagate changes to the files that import changed files, directly or transitively
+        final Map<String, List<File>> importers = new HashMap<>();
+        for (final Map.Entry<File, List<String>> entry : current.getImports().entrySet()) {
+            for (final String importedName : entry.getValue()) {
+                importers.computeIfAbsent(importedName, name -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+        final Deque<String> queue = new ArrayDeque<>(changedNames);
+        while (!queue.isEmpty()) {
+            for (final File importer : importers.getOrDefault(queue.poll(), emptyList())) {
+                if (staleSources.add(importer)) {
+                    queue.add(protoNames.apply(importer));
+                }
+            }
+        }
+
+        // Outputs of stale sources are obsolete; outputs shared with other sources drag those sources in
+        final Map<File, Set<File>> retainedOutputs = new LinkedHashMap<>(previous.getOutputSources());
+        final Set<File> obsoleteOutputs = new LinkedHashSet<>();
+        boolean fullRebuild = false;
+        boolean changed = true;
+        while (changed && !fullRebuild) {
+            changed = false;
+            for (final Map.Entry<File, Set<File>> entry : retainedOutputs.entrySet()) {
+                final Set<File> sources = entry.getValue();
+                if (sources == null) {
+                    if (!staleSources.isEmpty() || !removedSources.isEmpty()) {
+                        fullRebuild = true;
+                    }
+                } else if (!disjoint(sources, staleSources) || !disjoint(sources, removedSources)) {
+                    obsoleteOutputs.add(entry.getKey());
+                    for (final File source : sources) {
+                        if (currentHashes.containsKey(source) && staleSources.add(source)) {
+                            changed = true;
+                        }
+                    }
+                }
+            }
+            retainedOutputs.keySet().removeAll(obsoleteOutputs);
+        }
+        if (fullRebuild) {
+            // Outputs that cannot be attributed may belong to removed sources, so none of them survives;
+            // everything still backed by a source gets regenerated
+            obsoleteOutputs.clear();
+            obsoleteOutputs.addAll(previous.getOutputSources().keySet());
+            retainedOutputs.clear();
+            staleSources.addAll(currentHashes.keySet());
+        }
+        return new IncrementalBuildPlan(staleSources, removedSources, obsoleteOutputs, retainedOutputs, fullRebuild);
+    }
+
+    /**
+     * Returns the source files that need to be compiled.
+     *
+     * @return stale source files.
+     */
+    Set<File> getStaleSources() {
+        return staleSources;
+    }
+
+    /**
+     * Returns the source files that have been removed since the last run.
+     *
+     * @return removed source files.
+     */
+    Set<File> getRemovedSources() {
+        return removedSources;
+    }
+
+    /**
+     * Returns the generated files that must be deleted before compilation.
+     *
+     * @return obsolete generated files.
+     */
+    Set<File> getObsoleteOutputs() {
+        return obsoleteOutputs;
+    }
+
+    /**
+     * Returns the generated files of the previous run that remain valid, along with their source files.
+     *
+     * @return retained generated files.
+     */
+    Map<File, Set<File>> getRetainedOutputs() {
+        return retainedOutputs;
+    }
+
+    /**
+     * Tells whether all sources must be recompiled, because previous outputs cannot be attributed to their sources.
+     *
+     * @return {@code true} if all sources must be recompiled.
+     */
+    boolean isFullRebuild() {
+        return fullRebuild;
+    }
+
+    /**
+     * Attributes a generated file to the source files it was produced from.
+     * Generators put a reference to the source definition into the header of generated files.
+     *
+     * @param outputFile a file generated in the current run.
+     * @param compiledSources the source files compiled in the current run, by their proto path names.
+     * @return the source file the generated file was produced from, or {@code null} if there is no reference
+     *         to one of the compiled files.
+     */
+    static File findSource(final File outputFile, final Map<String, File> compiledSources) {
+        final byte[] header = new byte[HEADER_SIZE];
+        int length = 0;
+        try (final InputStream in = Files.newInputStream(outputFile.toPath())) {
+            int read;
+            while (length < header.length && (read = in.read(header, length, header.length - length)) != -1) {
+                length += read;
+            }
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to read generated file " + outputFile, e);
+        }
+        final Matcher matcher = SOURCE_REFERENCE_PATTERN.matcher(new String(header, 0, length, UTF_8));
+        return matcher.find() ? compiledSources.get(matcher.group(1)) : null;
+    }
+}
@@ -0,0 +1,99 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The import roots of the main definitions of a project, as recorded by the main compilation goals,
+ * so that the test compilation goals can import the main definitions without searching the build
+ * output directory.
+ *
+ * <p>Each execution records its proto source roots and the directories its dependencies were extracted to
+ * in a separate file, holding one absolute path per line.</p>
+ *
+ * @since 2.2.0
+ */
+final class MainProtoPath {
+
+    /**
+     * Name of the directory within the project build directory holding the recorded import roots.
+     */
+    static final String DIRECTORY = "protoc-main-proto-path";
+
+    private MainProtoPath() {
+    }
+
+    /**
+     * Records the import roots of an execution.
+     *
+     * @param directory the directory holding the recorded import roots.
+     * @param executionKey identifies the execution.
+     * @param protoPathElements the import roots.
+     */
+    static void write(final File directory, final String executionKey, final List<File> protoPathElements) {
+        final List<String> lines = new ArrayList<>();
+        for (final File protoPathElement : protoPathElements) {
+            lines.add(protoPathElement.getAbsolutePath());
+        }
+        final File file = new File(directory, executionKey);
+        try {
+            if (file.isFile() && Files.readAllLines(file.toPath(), UTF_8).equals(lines)) {
+                return;
+            }
+            Files.createDirectories(directory.toPath());
+            Files.write(file.toPath(), lines, UTF_8);
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to write main proto path " + file, e);
+        }
+    }
+
+    /**
+     * Reads the import roots recorded by all executions.
+     *
+     * @param directory the directory holding the recorded import roots.
+     * @return the existing import roots, or {@code null} if none have been recorded.
+     */
+    static List<File> read(final File directory) {
+        final File[] files = directory.listFiles();
+        if (files == null || files.length == 0) {
+            return null;
+        }
+        final Set<File> protoPathElements = new LinkedHashSet<>();
+        for (final File file : files) {
+            try {
+                for (final String line : Files.readAllLines(file.toPath(), UTF_8)) {
+                    final File protoPathElement = new File(line);
+                    if (!line.isEmpty() && protoPathElement.isDirectory()) {
+                        protoPathElements.add(protoPathElement);
+                    }
+                }
+            } catch (final IOException e) {
+                throw new MojoInitializationException("Unable to read main proto path " + file, e);
+            }
+        }
+        return new ArrayList<>(protoPathElements);
+    }
+}
@@ -0,0 +1,328 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Remembers which dependency jars have already been unpacked into the temporary proto file directory,
+ * so that unchanged jars are neither reopened nor re-extracted on subsequent builds.
+ *
+ * <p>A jar is identified by its absolute path and considered unchanged while its size and modification time
+ * stay the same. Jars without any {@code .proto} files are remembered as well, so that they are skipped
+ * without being scanned again. Along with each jar, a fingerprint of its proto files is kept, so that
+ * the build manifest can tell whether the definitions of a rebuilt jar have actually changed
+ * without reading them again. The cache may be accessed concurrently.</p>
+ *
+ * <p>Several mojo executions, such as {@code compile} and {@code test-compile}, may share the same directory.
+ * Each jar records the executions that use it, so that a jar is only forgotten once no execution uses it
+ * anymore, and a single cache instance is shared by all executions of a build, so that jars already
+ * verified or extracted by a previous execution are not even checked again.</p>
+ *
+ * @since 2.2.0
+ */
+final class ProtoExtractionCache {
+
+    /**
+     * Name of the cache file, stored in the root of the temporary proto file directory.
+     */
+    static final String CACHE_FILE_NAME = ".extraction-cache.properties";
+
+    private static final String COMMENT = "proto extraction cache, do not edit";
+
+    private static final String OWNER_SEPARATOR = ";";
+
+    private final File directory;
+
+    private final File cacheFile;
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    private final Set<String> verifiedJarPaths = new HashSet<>();
+
+    private boolean modified;
+
+    private ProtoExtractionCache(final File directory) {
+        this.directory = directory;
+        this.cacheFile = new File(directory, CACHE_FILE_NAME);
+    }
+
+    /**
+     * Loads the cache stored in the specified directory.
+     *
+     * @param directory the temporary proto file directory.
+     * @return the cache, or {@code null} if there is no readable cache in the directory.
+     */
+    static ProtoExtractionCache read(final File directory) {
+        final ProtoExtractionCache cache = new ProtoExtractionCache(directory);
+        if (!cache.cacheFile.isFile()) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        try (final InputStream in = Files.newInputStream(cache.cacheFile.toPath())) {
+            properties.load(in);
+        } catch (final IOException e) {
+            return null;
+        }
+        for (final String jarPath : properties.stringPropertyNames()) {
+            final Entry entry = Entry.parse(properties.getProperty(jarPath));
+            if (entry == null) {
+                return null;
+            }
+            cache.entries.put(jarPath, entry);
+        }
+        return cache;
+    }
+
+    /**
+     * Creates an empty cache for the specified directory.
+     *
+     * @param directory the temporary proto file directory.
+     * @return an empty cache.
+     */
+    static ProtoExtractionCache create(final File directory) {
+        final ProtoExtractionCache cache = new ProtoExtractionCache(directory);
+        cache.modified = true;
+        return cache;
+    }
+
+    /**
+     * Returns the directory a jar has been extracted to, provided that the jar has not changed since.
+     *
+     * @param jarFile a dependency jar.
+     * @return the extraction directory, relative to the cache directory unless the jar has been extracted
+     *         into a shared store, or {@code null} if the jar needs to be extracted again.
+     */
+    synchronized String getDirectoryName(final File jarFile) {
+        final Entry entry = entries.get(jarFile.getAbsolutePath());
+        if (entry != null && verifiedJarPaths.contains(jarFile.getAbsolutePath())) {
+            return entry.directoryName;
+        }
+        if (entry == null
+                || entry.length != jarFile.length()
+                || entry.lastModified != jarFile.lastModified()
+                || entry.containsProtos && !resolve(entry.directoryName).isDirectory()) {
+            return null;
+        }
+        verifiedJarPaths.add(jarFile.getAbsolutePath());
+        return entry.directoryName;
+    }
+
+    /**
+     * Returns the directory owned by this cache that a jar has last been extracted to,
+     * regardless of whether the jar has changed since.
+     *
+     * @param jarFile a dependency jar.
+     * @return the extraction directory, or {@code null} if the jar is unknown or has been extracted
+     *         into a shared store.
+     */
+    synchronized File getOwnedDirectory(final File jarFile) {
+        final Entry entry = entries.get(jarFile.getAbsolutePath());
+        return entry == null || new File(entry.directoryName).isAbsolute() ? null : resolve(entry.directoryName);
+    }
+
+    /**
+     * Resolves an extraction directory name against the cache directory.
+     *
+     * @param directoryName a relative or absolute directory name.
+     * @return the extraction directory.
+     */
+    File resolve(final String directoryName) {
+        return directory.toPath().resolve(directoryName).toFile();
+    }
+
+    /**
+     * Tells whether a jar contained any {@code .proto} files when it was last extracted.
+     *
+     * @param jarFile a dependency jar.
+     * @return {@code true} if the jar contains proto files.
+     */
+    synchronized boolean containsProtos(final File jarFile) {
+        final Entry entry = entries.get(jarFile.getAbsolutePath());
+        return entry != null && entry.containsProtos;
+    }
+
+    /**
+     * Returns the fingerprint of the proto files extracted from a jar.
+     *
+     * @param jarFile a dependency jar.
+     * @return the fingerprint recorded when the jar was extracted, or {@code null} if the jar is unknown.
+     */
+    synchronized String getFingerprint(final File jarFile) {
+        final Entry entry = entries.get(jarFile.getAbsolutePath());
+        return entry == null ? null : entry.fingerprint;
+    }
+
+    /**
+     * Records a freshly extracted jar.
+     *
+     * @param jarFile a dependency jar.
+     * @param directoryName the directory the jar's proto files have been extracted to,
+     *                      relative to the cache directory or absolute if it belongs to a shared store.
+     * @param containsProtos whether any proto files have been found in the jar.
+     * @param fingerprint the fingerprint of the extracted proto files.
+     * @param owner the execution using the jar.
+     */
+    synchronized void put(
+            final File jarFile,
+            final String directoryName,
+            final boolean containsProtos,
+            final String fingerprint,
+            final String owner
+    ) {
+        final Entry previousEntry = entries.get(jarFile.getAbsolutePath());
+        final Entry entry = new Entry(
+                jarFile.length(), jarFile.lastModified(), containsProtos, fingerprint, directoryName);
+        if (previousEntry != null) {
+            entry.owners.addAll(previousEntry.owners);
+        }
+        entry.owners.add(owner);
+        entries.put(jarFile.getAbsolutePath(), entry);
+        verifiedJarPaths.add(jarFile.getAbsolutePath());
+        modified = true;
+    }
+
+    /**
+     * Records that an execution uses a jar that has already been extracted.
+     *
+     * @param jarFile a dependency jar.
+     * @param owner the execution using the jar.
+     */
+    synchronized void addOwner(final File jarFile, final String owner) {
+        final Entry entry = entries.get(jarFile.getAbsolutePath());
+        if (entry != null && entry.owners.add(owner)) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Forgets the jars that no longer exist, e.g. after a dependency version change
+     * or a clean-up of the local repository, as well as the jars that are no longer used by any execution.
+     *
+     * @param jarFiles the jars used by the current execution.
+     * @param owner the current execution.
+     * @return the extraction directories of the removed jars that are owned by this cache;
+     *         directories in a shared store are never included.
+     */
+    synchronized List<File> removeUnusedJars(final Iterable<File> jarFiles, final String owner) {
+        final Set<String> usedJarPaths = new HashSet<>();
+        for (final File jarFile : jarFiles) {
+            usedJarPaths.add(jarFile.getAbsolutePath());
+        }
+        final List<File> directories = new ArrayList<>();
+        entries.entrySet().removeIf(entry -> {
+            final Entry value = entry.getValue();
+            if (!usedJarPaths.contains(entry.getKey()) && value.owners.remove(owner)) {
+                modified = true;
+            }
+            if (!value.owners.isEmpty() && new File(entry.getKey()).isFile()) {
+                return false;
+            }
+            if (value.containsProtos && !new File(value.directoryName).isAbsolute()) {
+                directories.add(resolve(value.directoryName));
+            }
+            verifiedJarPaths.remove(entry.getKey());
+            modified = true;
+            return true;
+        });
+        return directories;
+    }
+
+    /**
+     * Persists the cache, if it has been modified.
+     */
+    synchronized void write() {
+        if (!modified) {
+            return;
+        }
+        final Properties properties = new Properties();
+        for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().toString());
+        }
+        ProtocBuildManifest.writeProperties(properties, cacheFile, COMMENT);
+        modified = false;
+    }
+
+    private static final class Entry {
+
+        private final long length;
+
+        private final long lastModified;
+
+        private final boolean containsProtos;
+
+        private final String fingerprint;
+
+        private final String directoryName;
+
+        private final Set<String> owners = new TreeSet<>();
+
+        private Entry(
+                final long length,
+                final long lastModified,
+                final boolean containsProtos,
+                final String fingerprint,
+                final String directoryName
+        ) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.containsProtos = containsProtos;
+            this.fingerprint = fingerprint;
+            this.directoryName = directoryName;
+        }
+
+        private static Entry parse(final String value) {
+            // the directory name comes last, as it is the only field that may contain a separator
+            final String[] fields = value.split(",", 6);
+            if (fields.length != 6) {
+                return null;
+            }
+            try {
+                final Entry entry = new Entry(
+                        Long.parseLong(fields[0]),
+                        Long.parseLong(fields[1]),
+                        Boolean.parseBoolean(fields[2]),
+                        fields[3],
+                        fields[5]);
+                if (!fields[4].isEmpty()) {
+                    entry.owners.addAll(Arrays.asList(fields[4].split(OWNER_SEPARATOR)));
+                }
+                return entry;
+            } catch (final NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return length + "," + lastModified + "," + containsProtos + "," + fingerprint + ","
+                    + String.join(OWNER_SEPARATOR, owners) + "," + directoryName;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Splits a set of {@code .proto} files into shards that can be compiled by separate {@code protoc}
+ * processes at the same time.
+ *
+ * <p>Files that import each other, directly or transitively, always end up in the same shard, so that
+ * each definition is parsed by a single process and each shard yields a self-contained descriptor set.
+ * The connected groups of files are distributed over the shards largest first, each into the shard
+ * with the fewest files so far.</p>
+ *
+ * @since 2.2.0
+ */
+final class ProtoFileSharder {
+
+    private ProtoFileSharder() {
+    }
+
+    /**
+     * Splits the specified files into at most the specified number of shards.
+     *
+     * @param protoFiles the files to compile.
+     * @param nameFunction gives the name under which other files import a file.
+     * @param maxShards the maximum number of shards.
+     * @return the non-empty shards, each listing its files in their original order.
+     */
+    static List<List<File>> shard(
+            final List<File> protoFiles,
+            final Function<File, String> nameFunction,
+            final int maxShards
+    ) {
+        final Map<String, Integer> indexesByName = new HashMap<>();
+        for (int i = 0; i < protoFiles.size(); i++) {
+            indexesByName.put(nameFunction.apply(protoFiles.get(i)), i);
+        }
+        final int[] parents = new int[protoFiles.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+        for (int i = 0; i < protoFiles.size(); i++) {
+            for (final String importedName : readImports(protoFiles.get(i))) {
+                final Integer importedIndex = indexesByName.get(importedName);
+                if (importedIndex != null) {
+                    parents[findRoot(parents, i)] = findRoot(parents, importedIndex);
+                }
+            }
+        }
+
+        final Map<Integer, List<Integer>> components = new LinkedHashMap<>();
+        for (int i = 0; i < protoFiles.size(); i++) {
+            components.computeIfAbsent(findRoot(parents, i), root -> new ArrayList<>()).add(i);
+        }
+        final List<List<Integer>> sortedComponents = new ArrayList<>(components.values());
+        sortedComponents.sort(Comparator.comparingInt((List<Integer> component) -> component.size()).reversed());
+
+        final int shardCount = Math.max(1, Math.min(maxShards, sortedComponents.size()));
+        final List<List<Integer>> shardIndexes = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shardIndexes.add(new ArrayList<>());
+        }
+        for (final List<Integer> component : sortedComponents) {
+            shardIndexes.stream()
+                    .min(Comparator.comparingInt(Collection::size))
+                    .ifPresent(shard -> shard.addAll(component));
+        }
+
+        final List<List<File>> shards = new ArrayList<>(shardCount);
+        for (final List<Integer> indexes : shardIndexes) {
+            indexes.sort(null);
+            final List<File> shard = new ArrayList<>(indexes.size());
+            for (final int index : indexes) {
+                shard.add(protoFiles.get(index));
+            }
+            if (!shard.isEmpty()) {
+                shards.add(shard);
+            }
+        }
+        return shards;
+    }
+
+    private static int findRoot(final int[] parents, final int index) {
+        int root = index;
+        while (parents[root] != root) {
+            parents[root] = parents[parents[root]];
+            root = parents[root];
+        }
+        return root;
+    }
+
+    private static List<String> readImports(final File protoFile) {
+        try {
+            return ProtoImportScanner.scanImports(new String(Files.readAllBytes(protoFile.toPath()), UTF_8));
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to read " + protoFile.getAbsolutePath(), e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A lightweight scanner for {@code import} statements in protobuf definitions.
+ * It does not validate the syntax, it only needs to find the names of imported files.
+ *
+ * @since 2.2.0
+ */
+final class ProtoImportScanner {
+
+    private static final Pattern IMPORT_PATTERN =
+            Pattern.compile("\\bimport\\s+(?:(?:public|weak)\\s+)?\"([^\"]+)\"\\s*;");
+
+    private ProtoImportScanner() {
+    }
+
+    /**
+     * Returns the names of all files imported by a protobuf definition.
+     *
+     * @param content the content of a {@code .proto} file.
+     * @return imported file names, in declaration order.
+     */
+    static List<String> scanImports(final String content) {
+        final List<String> imports = new ArrayList<>();
+        final Matcher matcher = IMPORT_PATTERN.matcher(stripComments(content));
+        while (matcher.find()) {
+            imports.add(matcher.group(1));
+        }
+        return imports;
+    }
+
+    /**
+     * Replaces line and block comments with whitespace, leaving string literals intact.
+     *
+     * @param content the content of a {@code .proto} file.
+     * @return the content without comments.
+     */
+    private static String stripComments(final String content) {
+        final StringBuilder result = new StringBuilder(content.length());
+        final int length = content.length();
+        int i = 0;
+        while (i < length) {
+            final char c = content.charAt(i);
+            if (c == '"' || c == '\'') {
+                final int end = skipString(content, i, c);
+                result.append(content, i, end);
+                i = end;
+            } else if (c == '/' && i + 1 < length && content.charAt(i + 1) == '/') {
+                while (i < length && content.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < length && content.charAt(i + 1) == '*') {
+                final int end = content.indexOf("*/", i + 2);
+                i = end == -1 ? length : end + 2;
+                result.append(' ');
+            } else {
+                result.append(c);
+                i++;
+            }
+        }
+        return result.toString();
+    }
+
+    private static int skipString(final String content, final int start, final char quote) {
+        int i = start + 1;
+        while (i < content.length()) {
+            final char c = content.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote || c == '\n') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return content.length();
+    }
+}
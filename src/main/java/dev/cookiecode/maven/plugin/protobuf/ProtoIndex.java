@@ -0,0 +1,157 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An index of the proto files bundled in an artifact, listing the name and the SHA-256 hash of each file.
+ *
+ * <p>The index is written into artifacts that attach their proto sources, so that consumers can tell
+ * which bundled files have changed without enumerating and extracting the whole archive.
+ * Each line holds the hexadecimal hash and the name of a file, separated by a space;
+ * lines starting with {@code #} are comments.</p>
+ *
+ * @since 2.2.0
+ */
+final class ProtoIndex {
+
+    /**
+     * Location of the index within an artifact.
+     */
+    static final String PATH = "META-INF/protobuf/index";
+
+    private static final String HEADER = "# proto index: <sha-256> <name>";
+
+    private final SortedMap<String, String> hashes = new TreeMap<>();
+
+    /**
+     * Reads an index.
+     *
+     * @param in the index content.
+     * @return the index, or {@code null} if the content is malformed.
+     * @throws IOException if the content cannot be read.
+     */
+    static ProtoIndex read(final InputStream in) throws IOException {
+        final ProtoIndex index = new ProtoIndex();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            final int separator = line.indexOf(' ');
+            if (separator <= 0 || separator == line.length() - 1) {
+                return null;
+            }
+            index.put(line.substring(separator + 1), line.substring(0, separator));
+        }
+        return index;
+    }
+
+    /**
+     * Reads an index from a file.
+     *
+     * @param file index file.
+     * @return the index, or {@code null} if the file does not exist or cannot be read.
+     */
+    static ProtoIndex read(final File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (final InputStream in = Files.newInputStream(file.toPath())) {
+            return read(in);
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes this index into the specified file.
+     *
+     * @param file index file.
+     */
+    void write(final File file) {
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            try (final OutputStream out = Files.newOutputStream(file.toPath())) {
+                write(out);
+            }
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to write proto index " + file, e);
+        }
+    }
+
+    /**
+     * Writes this index into the specified stream.
+     *
+     * @param out the stream to write to, which is not closed.
+     * @throws IOException if the index cannot be written.
+     */
+    void write(final OutputStream out) throws IOException {
+        final Writer writer = new OutputStreamWriter(out, UTF_8);
+        writer.write(HEADER);
+        writer.write('\n');
+        for (final Map.Entry<String, String> entry : hashes.entrySet()) {
+            writer.write(entry.getValue());
+            writer.write(' ');
+            writer.write(entry.getKey());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    void put(final String name, final String hash) {
+        hashes.put(name, hash);
+    }
+
+    void putAll(final ProtoIndex other) {
+        hashes.putAll(other.hashes);
+    }
+
+    /**
+     * Returns the hashes of the indexed files.
+     *
+     * @return a sorted map of file names to their hashes.
+     */
+    SortedMap<String, String> getHashes() {
+        return hashes;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof ProtoIndex && hashes.equals(((ProtoIndex) other).hashes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashes.hashCode();
+    }
+}
@@ -0,0 +1,251 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.SelectorUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+
+/**
+ * Merges the proto files of several import roots into a single directory, so that each distinct file
+ * is materialized once and {@code protoc} searches a single import root.
+ *
+ * <p>Files are merged in proto path order. When the same relative path appears in several roots,
+ * the first copy wins, as it would on the original proto path; identical copies are dropped silently,
+ * while copies with a different content are reported as conflicts.</p>
+ *
+ * <p>The hashes of the merged files are kept in an index inside the target directory,
+ * so that unchanged files are not written again on subsequent builds. Along with the index, the fingerprint
+ * of the merged roots is recorded: as long as it stays the same, the roots are not even read again.</p>
+ *
+ * @since 2.2.0
+ */
+final class ProtoPathMerger {
+
+    private static final String INDEX_FILE_NAME = ".merged-index";
+
+    private static final String STATE_FILE_NAME = ".merged-state.properties";
+
+    private static final String ROOTS_KEY = "roots";
+
+    private static final String DUPLICATES_KEY = "duplicates";
+
+    private static final String CONFLICTS_KEY = "conflicts";
+
+    private static final String CONTAINS_PROTOS_KEY = "containsProtos";
+
+    private final String includes;
+
+    private final Log log;
+
+    private int duplicateCount;
+
+    private int conflictCount;
+
+    /**
+     * Creates a merger.
+     *
+     * @param includes the pattern of the proto files to merge, relative to each root.
+     * @param log the log to report conflicts to.
+     */
+    ProtoPathMerger(final String includes, final Log log) {
+        this.includes = includes;
+        this.log = log;
+    }
+
+    /**
+     * Merges the proto files of the specified roots into the target directory.
+     * Files of the target directory that no longer belong to the merged set are deleted.
+     *
+     * <p>If the roots have the same fingerprint as when the target directory was last merged, the directory
+     * is left as it is, and the numbers of duplicates and conflicts of that merge are reported again.
+     * Conflicts are only logged when the roots are actually merged.</p>
+     *
+     * @param protoPathElements the import roots, in proto path order.
+     * @param rootsFingerprint a fingerprint of the paths and the proto files of the roots, in proto path order.
+     * @param targetDirectory the directory to merge the files into.
+     * @return {@code true} if the target directory contains any proto files.
+     */
+    boolean merge(final List<File> protoPathElements, final String rootsFingerprint, final File targetDirectory) {
+        final File stateFile = new File(targetDirectory, STATE_FILE_NAME);
+        final Properties state = readState(stateFile);
+        if (state != null && rootsFingerprint.equals(state.getProperty(ROOTS_KEY))
+                && new File(targetDirectory, INDEX_FILE_NAME).isFile()) {
+            try {
+                duplicateCount = Integer.parseInt(state.getProperty(DUPLICATES_KEY));
+                conflictCount = Integer.parseInt(state.getProperty(CONFLICTS_KEY));
+                final boolean containsProtos = Boolean.parseBoolean(state.getProperty(CONTAINS_PROTOS_KEY));
+                if (log.isDebugEnabled()) {
+                    log.debug("Reusing merged proto path " + targetDirectory);
+                }
+                return containsProtos;
+            } catch (final NumberFormatException e) {
+                log.debug("Ignoring malformed merge state " + stateFile);
+            }
+        }
+        // the state is only written back once the merge is complete, so that an interrupted merge is redone
+        deleteFile(stateFile);
+        duplicateCount = 0;
+        conflictCount = 0;
+        final Map<String, String> hashes = new HashMap<>();
+        final Map<String, File> origins = new HashMap<>();
+        final Map<String, Path> sources = new HashMap<>();
+        for (final File protoPathElement : protoPathElements) {
+            final Path root = protoPathElement.toPath();
+            for (final Path path : findProtoFiles(root)) {
+                final String name = root.relativize(path).toString().replace(File.separatorChar, '/');
+                final byte[] content = readFile(path);
+                final String hash = ProtocBuildManifest.sha256(content);
+                final String mergedHash = hashes.get(name);
+                if (mergedHash == null) {
+                    hashes.put(name, hash);
+                    origins.put(name, protoPathElement);
+                    sources.put(name, path);
+                } else if (mergedHash.equals(hash)) {
+                    duplicateCount++;
+                } else {
+                    conflictCount++;
+                    log.warn(format("Conflicting definitions of %s in %s and %s, using the former",
+                            name, origins.get(name), protoPathElement));
+                }
+            }
+        }
+
+        final File indexFile = new File(targetDirectory, INDEX_FILE_NAME);
+        final ProtoIndex previousIndex = ProtoIndex.read(indexFile);
+        final Map<String, String> previousHashes = previousIndex != null
+                ? previousIndex.getHashes()
+                : new HashMap<>();
+        if (previousIndex == null) {
+            deleteDirectory(targetDirectory);
+        }
+        for (final String name : previousHashes.keySet()) {
+            if (!hashes.containsKey(name)) {
+                deleteFile(new File(targetDirectory, name));
+            }
+        }
+        final ProtoIndex index = new ProtoIndex();
+        for (final Map.Entry<String, String> entry : hashes.entrySet()) {
+            final String name = entry.getKey();
+            final File file = new File(targetDirectory, name);
+            if (!entry.getValue().equals(previousHashes.get(name)) || !file.isFile()) {
+                writeFile(file, readFile(sources.get(name)));
+            }
+            index.put(name, entry.getValue());
+        }
+        index.write(indexFile);
+
+        final Properties newState = new Properties();
+        newState.setProperty(ROOTS_KEY, rootsFingerprint);
+        newState.setProperty(DUPLICATES_KEY, Integer.toString(duplicateCount));
+        newState.setProperty(CONFLICTS_KEY, Integer.toString(conflictCount));
+        newState.setProperty(CONTAINS_PROTOS_KEY, Boolean.toString(!hashes.isEmpty()));
+        ProtocBuildManifest.writeProperties(newState, stateFile, "merged proto path state, do not edit");
+        return !hashes.isEmpty();
+    }
+
+    /**
+     * Returns the number of identical copies dropped by the last call to {@link #merge(List, String, File)}.
+     *
+     * @return the number of duplicates.
+     */
+    int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * Returns the number of conflicting copies reported by the last call to {@link #merge(List, String, File)}.
+     *
+     * @return the number of conflicts.
+     */
+    int getConflictCount() {
+        return conflictCount;
+    }
+
+    private static Properties readState(final File stateFile) {
+        if (!stateFile.isFile()) {
+            return null;
+        }
+        final Properties state = new Properties();
+        try (final InputStream in = Files.newInputStream(stateFile.toPath())) {
+            state.load(in);
+        } catch (final IOException e) {
+            return null;
+        }
+        return state;
+    }
+
+    private List<Path> findProtoFiles(final Path root) {
+        try (final Stream<Path> paths = Files.walk(root)) {
+            return paths
+                    .filter(path -> Files.isRegularFile(path) && SelectorUtils.matchPath(
+                            includes, root.relativize(path).toString(), File.separator, true))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (final IOException | UncheckedIOException e) {
+            throw new MojoInitializationException("Unable to scan for proto files in: " + root, e);
+        }
+    }
+
+    private static byte[] readFile(final Path path) {
+        try {
+            return Files.readAllBytes(path);
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to read " + path, e);
+        }
+    }
+
+    private static void writeFile(final File file, final byte[] content) {
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), content);
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to write " + file, e);
+        }
+    }
+
+    private static void deleteFile(final File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to delete " + file, e);
+        }
+    }
+
+    private static void deleteDirectory(final File directory) {
+        try {
+            FileUtils.deleteDirectory(directory);
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to clean up " + directory, e);
+        }
+    }
+}
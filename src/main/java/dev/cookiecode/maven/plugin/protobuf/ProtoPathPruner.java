@@ -0,0 +1,113 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Determines which import roots actually provide the files imported by the compiled files,
+ * directly or transitively, so that the others can be left out of the {@code protoc} command line.
+ *
+ * <p>Imports are resolved the way {@code protoc} resolves them: each import is looked up in the
+ * import roots in order, and the first root that contains it is used. Leaving out the roots that
+ * never provide an import therefore does not change the outcome of the compilation.
+ * Imports that cannot be resolved are ignored, and left for {@code protoc} to report.</p>
+ *
+ * @since 2.2.0
+ */
+final class ProtoPathPruner {
+
+    private final List<File> protoPathElements;
+
+    /**
+     * Creates a pruner.
+     *
+     * @param protoPathElements all import roots, in proto path order, starting with the proto source root.
+     */
+    ProtoPathPruner(final List<File> protoPathElements) {
+        this.protoPathElements = protoPathElements;
+    }
+
+    /**
+     * Finds the import roots that provide the compiled files or any of their transitive imports.
+     *
+     * @param protoFiles the files to be compiled.
+     * @return the used import roots.
+     */
+    Set<File> findUsedProtoPathElements(final List<File> protoFiles) {
+        final Set<File> usedElements = new LinkedHashSet<>();
+        final Set<String> seenNames = new HashSet<>();
+        final Deque<String> queue = new ArrayDeque<>();
+        for (final File protoFile : protoFiles) {
+            enqueueImports(protoFile, seenNames, queue);
+        }
+        while (!queue.isEmpty()) {
+            final String name = queue.poll();
+            for (final File protoPathElement : protoPathElements) {
+                final File file = new File(protoPathElement, name);
+                if (file.isFile()) {
+                    usedElements.add(protoPathElement);
+                    enqueueImports(file, seenNames, queue);
+                    break;
+                }
+            }
+        }
+        return usedElements;
+    }
+
+    /**
+     * Removes the import roots that are not used from a list.
+     *
+     * @param elements import roots, a subset of those given at construction.
+     * @param usedElements the used import roots.
+     * @return the used import roots of the list, in their original order.
+     */
+    static List<File> retainUsed(final List<File> elements, final Set<File> usedElements) {
+        final List<File> retainedElements = new ArrayList<>();
+        for (final File element : elements) {
+            if (usedElements.contains(element)) {
+                retainedElements.add(element);
+            }
+        }
+        return retainedElements;
+    }
+
+    private static void enqueueImports(final File protoFile, final Set<String> seenNames, final Deque<String> queue) {
+        final String content;
+        try {
+            content = new String(Files.readAllBytes(protoFile.toPath()), UTF_8);
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to read " + protoFile.getAbsolutePath(), e);
+        }
+        for (final String importedName : ProtoImportScanner.scanImports(content)) {
+            if (seenNames.add(importedName)) {
+                queue.add(importedName);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+
+/**
+ * A source directory containing {@code .proto} definitions to be compiled, along with the patterns
+ * selecting the definitions to compile. The state is populated from the Maven plugin's configuration.
+ *
+ * @since 2.2.0
+ */
+public class ProtoSourceRoot {
+
+    private File directory;
+
+    private List<String> includes;
+
+    private List<String> excludes;
+
+    /**
+     * Creates an empty source root, to be populated from the configuration.
+     */
+    public ProtoSourceRoot() {
+    }
+
+    /**
+     * Creates a source root.
+     *
+     * @param directory the source directory.
+     * @param includes patterns of the definitions to compile.
+     * @param excludes patterns of the definitions not to compile.
+     */
+    ProtoSourceRoot(final File directory, final String[] includes, final String[] excludes) {
+        this.directory = directory;
+        this.includes = asList(includes);
+        this.excludes = asList(excludes);
+    }
+
+    /**
+     * Returns the source directory, which is also the import root of its definitions.
+     *
+     * @return the source directory.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the patterns of the definitions to compile, relative to the source directory.
+     * When empty, the {@code includes} of the mojo apply.
+     *
+     * @return a list of include patterns.
+     */
+    public List<String> getIncludes() {
+        return includes != null ? includes : emptyList();
+    }
+
+    /**
+     * Returns the patterns of the definitions not to compile, relative to the source directory.
+     * When empty, the {@code excludes} of the mojo apply.
+     *
+     * @return a list of exclude patterns.
+     */
+    public List<String> getExcludes() {
+        return excludes != null ? excludes : emptyList();
+    }
+
+    /**
+     * Validate the state of this source root specification.
+     */
+    public void validate() {
+        if (directory == null) {
+            throw new MojoConfigurationException("directory must be set in protoSourceRoot definition");
+        }
+        if (directory.isFile()) {
+            throw new MojoConfigurationException(
+                    format("protoSourceRoot %s is a file, not a directory", directory));
+        }
+    }
+}
@@ -19,17 +19,19 @@ package dev.cookiecode.maven.plugin.protobuf;
 import org.apache.maven.plugin.logging.Log;
 import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
-import org.codehaus.plexus.util.cli.CommandLineUtils.StringStreamConsumer;
 import org.codehaus.plexus.util.cli.Commandline;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.codehaus.plexus.util.StringUtils.join;
 
 /**
@@ -58,11 +60,22 @@ final class Protoc {
      */
     private final List<File> protoFiles;
 
+    /**
+     * Binary descriptor sets in which to search for definition imports, after the proto path.
+     */
+    private final List<File> descriptorSetInputs;
+
     /**
      * A directory into which Java source files will be generated.
      */
     private final File javaOutputDirectory;
 
+    /**
+     * Whether the built-in Java generator writes into {@link #javaOutputDirectory},
+     * which is not the case for invocations that only run some of the {@link #plugins}.
+     */
+    private final boolean javaGeneratorEnabled;
+
     private final List<ProtocPlugin> plugins;
 
     private final File pluginDirectory;
@@ -73,6 +86,16 @@ final class Protoc {
 
     private final String nativePluginParameter;
 
+    /**
+     * Options of the built-in Java generator, overriding {@link #nativePluginParameter} for it.
+     */
+    private final String javaOutputParameter;
+
+    /**
+     * Options of the built-in JavaScript generator, overriding {@link #nativePluginParameter} for it.
+     */
+    private final String javaScriptOutputParameter;
+
     private final String extraArgs;
 
     /**
@@ -107,14 +130,14 @@ final class Protoc {
     private final boolean includeSourceInfoInDescriptorSet;
 
     /**
-     * A buffer to consume standard output from the {@code protoc} executable.
+     * Consumes standard output from the {@code protoc} executable, once it has been invoked.
      */
-    private final StringStreamConsumer output;
+    private ProtocOutputConsumer output;
 
     /**
-     * A buffer to consume error output from the {@code protoc} executable.
+     * Consumes error output from the {@code protoc} executable, once it has been invoked.
      */
-    private final StringStreamConsumer error;
+    private ProtocOutputConsumer error;
 
     /**
      * A directory where temporary files will be generated.
@@ -132,7 +155,9 @@ final class Protoc {
      * @param executable path to the {@code protoc} executable.
      * @param protoPath a set of directories in which to search for definition imports.
      * @param protoFiles a set of protobuf definitions to process.
+     * @param descriptorSetInputs a set of binary descriptor sets in which to search for definition imports.
      * @param javaOutputDirectory a directory into which Java source files will be generated.
+     * @param javaGeneratorEnabled whether the built-in Java generator is run.
      * @param cppOutputDirectory a directory into which C++ source files will be generated.
      * @param pythonOutputDirectory a directory into which Python source files will be generated.
      * @param csharpOutputDirectory a directory into which C# source files will be generated.
@@ -148,6 +173,9 @@ final class Protoc {
      * @param nativePluginId a unique id of a native plugin.
      * @param nativePluginExecutable path to the native plugin executable.
      * @param nativePluginParameter an optional parameter for a native plugin.
+     * @param javaOutputParameter optional options of the Java generator, overriding {@code nativePluginParameter}.
+     * @param javaScriptOutputParameter optional options of the JavaScript generator,
+     *                                  overriding {@code nativePluginParameter}.
      * @param extraArgs an optional parameter to let configure extra args passed with the command protoc
      * @param tempDirectory a directory where temporary files will be generated.
      * @param useArgumentFile If {@code true}, parameters to protoc will be put in an argument file
@@ -156,7 +184,9 @@ final class Protoc {
             final String executable,
             final List<File> protoPath,
             final List<File> protoFiles,
+            final List<File> descriptorSetInputs,
             final File javaOutputDirectory,
+            final boolean javaGeneratorEnabled,
             final File cppOutputDirectory,
             final File pythonOutputDirectory,
             final File csharpOutputDirectory,
@@ -170,6 +200,8 @@ final class Protoc {
             final String nativePluginId,
             final String nativePluginExecutable,
             final String nativePluginParameter,
+            final String javaOutputParameter,
+            final String javaScriptOutputParameter,
             final String extraArgs,
             final File tempDirectory,
             final boolean useArgumentFile
@@ -186,7 +218,9 @@ final class Protoc {
         this.executable = executable;
         this.protoPathElements = protoPath;
         this.protoFiles = protoFiles;
+        this.descriptorSetInputs = descriptorSetInputs;
         this.javaOutputDirectory = javaOutputDirectory;
+        this.javaGeneratorEnabled = javaGeneratorEnabled;
         this.cppOutputDirectory = cppOutputDirectory;
         this.pythonOutputDirectory = pythonOutputDirectory;
         this.csharpOutputDirectory = csharpOutputDirectory;
@@ -200,11 +234,113 @@ final class Protoc {
         this.nativePluginId = nativePluginId;
         this.nativePluginExecutable = nativePluginExecutable;
         this.nativePluginParameter = nativePluginParameter;
+        this.javaOutputParameter = javaOutputParameter;
+        this.javaScriptOutputParameter = javaScriptOutputParameter;
         this.extraArgs = extraArgs;
         this.tempDirectory = tempDirectory;
         this.useArgumentFile = useArgumentFile;
-        this.error = new StringStreamConsumer();
-        this.output = new StringStreamConsumer();
+    }
+
+    /**
+     * Creates an invocation with the same configuration, compiling only some of the files.
+     *
+     * @param shardProtoFiles the files to compile, a subset of those of this invocation.
+     * @param shardDescriptorSetFile the file to write the descriptor set of the compiled files to,
+     *                               if this invocation writes a descriptor set.
+     * @return a configured {@link Protoc} instance.
+     * @since 2.2.0
+     */
+    public Protoc forShard(final List<File> shardProtoFiles, final File shardDescriptorSetFile) {
+        return copy(shardProtoFiles, descriptorSetFile != null ? shardDescriptorSetFile : null,
+                javaOutputDirectory, javaGeneratorEnabled, plugins, cppOutputDirectory, pythonOutputDirectory,
+                csharpOutputDirectory, javaScriptOutputDirectory, customOutputDirectory);
+    }
+
+    /**
+     * Splits this invocation into one invocation per generator: one for each built-in generator,
+     * one for each java protoc plugin, and one for the custom plugin. The first invocation also writes
+     * the descriptor set, if any. The invocations can run at the same time, as each generator writes
+     * its own files.
+     *
+     * @return the invocations, or a list holding only this invocation if it runs a single generator.
+     * @since 2.2.0
+     */
+    public List<Protoc> splitByGenerator() {
+        final List<ProtocPlugin> noPlugins = Collections.emptyList();
+        final List<Protoc> invocations = new ArrayList<>();
+        if (javaOutputDirectory != null && javaGeneratorEnabled) {
+            invocations.add(copy(protoFiles, descriptorSetFile,
+                    javaOutputDirectory, true, noPlugins, null, null, null, null, null));
+        }
+        if (javaOutputDirectory != null) {
+            for (final ProtocPlugin plugin : plugins) {
+                invocations.add(copy(protoFiles, invocations.isEmpty() ? descriptorSetFile : null,
+                        javaOutputDirectory, false, Collections.singletonList(plugin), null, null, null, null, null));
+            }
+        }
+        if (cppOutputDirectory != null) {
+            invocations.add(copy(protoFiles, invocations.isEmpty() ? descriptorSetFile : null,
+                    null, false, noPlugins, cppOutputDirectory, null, null, null, null));
+        }
+        if (pythonOutputDirectory != null) {
+            invocations.add(copy(protoFiles, invocations.isEmpty() ? descriptorSetFile : null,
+                    null, false, noPlugins, null, pythonOutputDirectory, null, null, null));
+        }
+        if (csharpOutputDirectory != null) {
+            invocations.add(copy(protoFiles, invocations.isEmpty() ? descriptorSetFile : null,
+                    null, false, noPlugins, null, null, csharpOutputDirectory, null, null));
+        }
+        if (javaScriptOutputDirectory != null) {
+            invocations.add(copy(protoFiles, invocations.isEmpty() ? descriptorSetFile : null,
+                    null, false, noPlugins, null, null, null, javaScriptOutputDirectory, null));
+        }
+        if (customOutputDirectory != null) {
+            invocations.add(copy(protoFiles, invocations.isEmpty() ? descriptorSetFile : null,
+                    null, false, noPlugins, null, null, null, null, customOutputDirectory));
+        }
+        if (invocations.size() <= 1) {
+            return Collections.singletonList(this);
+        }
+        return invocations;
+    }
+
+    private Protoc copy(
+            final List<File> protoFiles,
+            final File descriptorSetFile,
+            final File javaOutputDirectory,
+            final boolean javaGeneratorEnabled,
+            final List<ProtocPlugin> plugins,
+            final File cppOutputDirectory,
+            final File pythonOutputDirectory,
+            final File csharpOutputDirectory,
+            final File javaScriptOutputDirectory,
+            final File customOutputDirectory
+    ) {
+        return new Protoc(
+                executable,
+                protoPathElements,
+                protoFiles,
+                descriptorSetInputs,
+                javaOutputDirectory,
+                javaGeneratorEnabled,
+                cppOutputDirectory,
+                pythonOutputDirectory,
+                csharpOutputDirectory,
+                javaScriptOutputDirectory,
+                customOutputDirectory,
+                descriptorSetFile,
+                includeImportsInDescriptorSet,
+                includeSourceInfoInDescriptorSet,
+                plugins,
+                pluginDirectory,
+                nativePluginId,
+                nativePluginExecutable,
+                nativePluginParameter,
+                javaOutputParameter,
+                javaScriptOutputParameter,
+                extraArgs,
+                tempDirectory,
+                useArgumentFile);
     }
 
     /**
@@ -230,6 +366,8 @@ final class Protoc {
         } else {
             cl.addArguments(args);
         }
+        output = new ProtocOutputConsumer(log, false);
+        error = new ProtocOutputConsumer(log, true);
         // There is a race condition in JDK that may sporadically prevent process creation on Linux
         // https://bugs.openjdk.java.net/browse/JDK-8068370
         // In order to mitigate that, retry up to 2 more times before giving up
@@ -255,18 +393,40 @@ final class Protoc {
      * @return A list consisting of the executable followed by any arguments.
      */
     public List<String> buildProtocCommand() {
+        return buildProtocCommand(true);
+    }
+
+    /**
+     * Creates the command line arguments without the list of compiled {@code .proto} files.
+     * The result identifies the effective {@code protoc} configuration independently of the compiled sources.
+     *
+     * @return A list of command line options.
+     * @since 2.2.0
+     */
+    public List<String> buildProtocOptions() {
+        return buildProtocCommand(false);
+    }
+
+    private List<String> buildProtocCommand(final boolean includeProtoFiles) {
         final List<String> command = new ArrayList<>();
         // add the executable
         for (final File protoPathElement : protoPathElements) {
             command.add("--proto_path=" + protoPathElement);
         }
+        if (!descriptorSetInputs.isEmpty()) {
+            command.add("--descriptor_set_in=" + join(descriptorSetInputs.iterator(), File.pathSeparator));
+        }
         if (javaOutputDirectory != null) {
-            String outputOption = "--java_out=";
-            if (nativePluginParameter != null) {
-                outputOption += nativePluginParameter + ':';
+            if (javaGeneratorEnabled) {
+                String outputOption = "--java_out=";
+                if (javaOutputParameter != null) {
+                    outputOption += javaOutputParameter + ':';
+                } else if (nativePluginParameter != null) {
+                    outputOption += nativePluginParameter + ':';
+                }
+                outputOption += javaOutputDirectory;
+                command.add(outputOption);
             }
-            outputOption += javaOutputDirectory;
-            command.add(outputOption);
 
             // For now we assume all custom plugins produce Java output
             for (final ProtocPlugin plugin : plugins) {
@@ -286,7 +446,9 @@ final class Protoc {
         }
         if (javaScriptOutputDirectory != null) {
             String outputOption = "--js_out=";
-            if (nativePluginParameter != null) {
+            if (javaScriptOutputParameter != null) {
+                outputOption += javaScriptOutputParameter + ':';
+            } else if (nativePluginParameter != null) {
                 outputOption += nativePluginParameter + ':';
             }
             outputOption += javaScriptOutputDirectory;
@@ -310,8 +472,10 @@ final class Protoc {
             command.add(extraArgs);
         }
 
-        for (final File protoFile : protoFiles) {
-            command.add(protoFile.toString());
+        if (includeProtoFiles) {
+            for (final File protoFile : protoFiles) {
+                command.add(protoFile.toString());
+            }
         }
         if (descriptorSetFile != null) {
             command.add("--descriptor_set_out=" + descriptorSetFile);
@@ -377,6 +541,13 @@ final class Protoc {
                 log.debug(LOG_PREFIX + ' ' + javaScriptOutputDirectory);
             }
 
+            if (!descriptorSetInputs.isEmpty()) {
+                log.debug(LOG_PREFIX + "Descriptor set inputs:");
+                for (final File descriptorSetInput : descriptorSetInputs) {
+                    log.debug(LOG_PREFIX + ' ' + descriptorSetInput);
+                }
+            }
+
             if (descriptorSetFile != null) {
                 log.debug(LOG_PREFIX + "Descriptor set output file:");
                 log.debug(LOG_PREFIX + ' ' + descriptorSetFile);
@@ -398,28 +569,37 @@ final class Protoc {
     }
 
     /**
-     * @return the output
+     * @return the output, of which only the first lines are retained.
      */
     public String getOutput() {
-        return fixUnicodeOutput(output.getOutput());
+        return output != null ? output.getOutput() : "";
     }
 
     /**
-     * @return the error
+     * @return the error, of which only the first lines are retained.
      */
     public String getError() {
-        return fixUnicodeOutput(error.getOutput());
+        return error != null ? error.getOutput() : "";
     }
 
     /**
-     * Transcodes the output from system default charset to UTF-8.
-     * Protoc emits messages in UTF-8, but they are captured into a stream that has a system-default encoding.
+     * Returns the diagnostics {@code protoc} reported about positions in {@code .proto} files.
      *
-     * @param message a UTF-8 message in system-default encoding.
-     * @return the same message converted into a unicode string.
+     * @return the parsed diagnostics, of which only the first ones are retained.
+     * @since 2.2.0
      */
-    private static String fixUnicodeOutput(final String message) {
-        return new String(message.getBytes(), UTF_8);
+    List<ProtocOutputConsumer.Diagnostic> getDiagnostics() {
+        return error != null ? error.getDiagnostics() : Collections.<ProtocOutputConsumer.Diagnostic>emptyList();
+    }
+
+    /**
+     * Returns the file the descriptor set is written to.
+     *
+     * @return the descriptor set file, or {@code null} if no descriptor set is written.
+     * @since 2.2.0
+     */
+    public File getDescriptorSetFile() {
+        return descriptorSetFile;
     }
 
     /**
@@ -461,8 +641,12 @@ final class Protoc {
 
         private final LinkedHashSet<File> protopathElements;
 
+        private final PathTrie protoPathTrie = new PathTrie();
+
         private final List<File> protoFiles;
 
+        private final List<File> descriptorSetInputs;
+
         private final List<ProtocPlugin> plugins;
 
         private File tempDirectory;
@@ -479,6 +663,10 @@ final class Protoc {
 
         private String nativePluginParameter;
 
+        private String javaOutputParameter;
+
+        private String javaScriptOutputParameter;
+
         private String extraArgs;
 
         /**
@@ -530,6 +718,7 @@ final class Protoc {
             }
             this.executable = executable;
             protoFiles = new ArrayList<>();
+            descriptorSetInputs = new ArrayList<>();
             protopathElements = new LinkedHashSet<>();
             plugins = new ArrayList<>();
         }
@@ -658,7 +847,8 @@ final class Protoc {
         /**
          * Adds a proto file to be compiled. Proto files must be on the protopath
          * and this method will fail if a proto file is added without first adding a
-         * parent directory to the protopath.
+         * parent directory to the protopath. The file system is not accessed:
+         * the file is expected to have been found by scanning a proto path element.
          *
          * @param protoFile source protobuf definitions file.
          * @return The builder.
@@ -667,9 +857,6 @@ final class Protoc {
             if (protoFile == null) {
                 throw new MojoConfigurationException("'protoFile' is null");
             }
-            if (!protoFile.isFile()) {
-                throw new MojoConfigurationException("Proto file is not a file: " + protoFile.getAbsolutePath());
-            }
             checkProtoFileIsInProtopath(protoFile);
             protoFiles.add(protoFile);
             return this;
@@ -736,6 +923,44 @@ final class Protoc {
             return this;
         }
 
+        /**
+         * Sets the options of the built-in Java generator, when they differ from the native plugin parameter,
+         * e.g. because several generators run in the same invocation.
+         *
+         * @param javaOutputParameter comma-separated options of the Java generator.
+         * @return this builder instance.
+         * @since 2.2.0
+         */
+        public Builder setJavaOutputParameter(final String javaOutputParameter) {
+            if (javaOutputParameter == null) {
+                throw new MojoConfigurationException("'javaOutputParameter' is null");
+            }
+            if (javaOutputParameter.contains(":")) {
+                throw new MojoConfigurationException("'javaOutputParameter' contains illegal characters");
+            }
+            this.javaOutputParameter = javaOutputParameter;
+            return this;
+        }
+
+        /**
+         * Sets the options of the built-in JavaScript generator, when they differ from the native plugin
+         * parameter, e.g. because several generators run in the same invocation.
+         *
+         * @param javaScriptOutputParameter comma-separated options of the JavaScript generator.
+         * @return this builder instance.
+         * @since 2.2.0
+         */
+        public Builder setJavaScriptOutputParameter(final String javaScriptOutputParameter) {
+            if (javaScriptOutputParameter == null) {
+                throw new MojoConfigurationException("'javaScriptOutputParameter' is null");
+            }
+            if (javaScriptOutputParameter.contains(":")) {
+                throw new MojoConfigurationException("'javaScriptOutputParameter' contains illegal characters");
+            }
+            this.javaScriptOutputParameter = javaScriptOutputParameter;
+            return this;
+        }
+
         public Builder setExtraArgs(final String extraArgs) {
             if (extraArgs == null) {
                 throw new MojoConfigurationException("'extraArgs' is null");
@@ -765,31 +990,34 @@ final class Protoc {
             return this;
         }
 
+        /**
+         * Adds binary descriptor sets, in which imports that are not found on the proto path are looked up.
+         *
+         * @param descriptorSetInputs binary {@code FileDescriptorSet} files.
+         * @return this builder instance.
+         */
+        public Builder addDescriptorSetInputs(final Iterable<File> descriptorSetInputs) {
+            for (final File descriptorSetInput : descriptorSetInputs) {
+                if (!descriptorSetInput.isFile()) {
+                    throw new MojoConfigurationException(
+                            "Descriptor set is not a file: " + descriptorSetInput.getAbsolutePath());
+                }
+                this.descriptorSetInputs.add(descriptorSetInput);
+            }
+            return this;
+        }
+
         public Builder useArgumentFile(final boolean useArgumentFile) {
             this.useArgumentFile = useArgumentFile;
             return this;
         }
 
         private void checkProtoFileIsInProtopath(final File protoFile) {
-            if (!protoFile.isFile()) {
-                throw new MojoConfigurationException("Not a regular file: " + protoFile.getAbsolutePath());
-            }
-            if (!checkProtoFileIsInProtopathHelper(protoFile.getParentFile())) {
+            if (!protoPathTrie.containsAncestorOf(protoFile)) {
                 throw new MojoConfigurationException("File is not in proto path: " + protoFile.getAbsolutePath());
             }
         }
 
-        private boolean checkProtoFileIsInProtopathHelper(final File directory) {
-            if (!directory.isDirectory()) {
-                throw new MojoConfigurationException("Not a directory: " + directory.getAbsolutePath());
-            }
-            if (protopathElements.contains(directory)) {
-                return true;
-            }
-            final File parentDirectory = directory.getParentFile();
-            return parentDirectory != null && checkProtoFileIsInProtopathHelper(parentDirectory);
-        }
-
         /**
          * Adds a collection of proto files to be compiled.
          *
@@ -819,6 +1047,7 @@ final class Protoc {
                         "Proto path element is not a directory: " + protopathElement.getAbsolutePath());
             }
             protopathElements.add(protopathElement);
+            protoPathTrie.add(protopathElement);
             return this;
         }
 
@@ -868,7 +1097,9 @@ final class Protoc {
                     executable,
                     new ArrayList<>(protopathElements),
                     protoFiles,
+                    descriptorSetInputs,
                     javaOutputDirectory,
+                    true,
                     cppOutputDirectory,
                     pythonOutputDirectory,
                     csharpOutputDirectory,
@@ -882,9 +1113,65 @@ final class Protoc {
                     nativePluginId,
                     nativePluginExecutable,
                     nativePluginParameter,
+                    javaOutputParameter,
+                    javaScriptOutputParameter,
                     extraArgs,
                     tempDirectory,
                     useArgumentFile);
         }
     }
+
+    /**
+     * A trie of the normalized absolute paths of proto path elements, which tells whether a file is located
+     * below any of them by comparing path components, without accessing the file system.
+     */
+    private static final class PathTrie {
+
+        // path components compare like the file system does, e.g. case-insensitively on Windows
+        private final Map<Path, PathTrie> children = new HashMap<>();
+
+        private boolean terminal;
+
+        void add(final File directory) {
+            PathTrie node = this;
+            for (final Path component : components(directory)) {
+                node = node.children.computeIfAbsent(component, key -> new PathTrie());
+            }
+            node.terminal = true;
+        }
+
+        /**
+         * Tells whether the file is located below one of the directories of this trie.
+         *
+         * @param file a file.
+         * @return {@code true} if a proper ancestor of the file has been added to this trie.
+         */
+        boolean containsAncestorOf(final File file) {
+            final List<Path> components = components(file);
+            PathTrie node = this;
+            // the last component is the file name, which cannot be an ancestor
+            for (int i = 0; i < components.size() - 1; i++) {
+                node = node.children.get(components.get(i));
+                if (node == null) {
+                    return false;
+                }
+                if (node.terminal) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static List<Path> components(final File file) {
+            final Path path = file.getAbsoluteFile().toPath().normalize();
+            final List<Path> components = new ArrayList<>(path.getNameCount() + 1);
+            if (path.getRoot() != null) {
+                components.add(path.getRoot());
+            }
+            for (final Path name : path) {
+                components.add(name);
+            }
+            return components;
+        }
+    }
 }
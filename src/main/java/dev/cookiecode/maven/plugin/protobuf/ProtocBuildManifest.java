@@ -0,0 +1,442 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.Arrays.asList;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A persisted record of the inputs and outputs of the last successful {@code protoc} run.
+ *
+ * <p>The manifest maps keys to values, where the key prefix denotes the kind of the entry:
+ * source file hashes, the identity of the {@code protoc} executable, the effective command line options,
+ * java plugin definitions, fingerprints of the imported definitions, and generated files. Two manifests describe the same compilation
+ * if all their input entries are equal.</p>
+ *
+ * @since 2.2.0
+ */
+final class ProtocBuildManifest {
+
+    /**
+     * Key prefix for SHA-256 hashes of compiled {@code .proto} files.
+     */
+    static final String SOURCE_PREFIX = "source:";
+
+    /**
+     * Key prefix for the names of files imported by compiled {@code .proto} files.
+     */
+    static final String IMPORT_PREFIX = "import:";
+
+    /**
+     * Key prefix for java protoc plugin definitions.
+     */
+    static final String PLUGIN_PREFIX = "plugin:";
+
+    /**
+     * Key prefix for the hashes of dependency descriptor sets used to resolve imports.
+     */
+    static final String DESCRIPTOR_SET_PREFIX = "descriptor-set:";
+
+    /**
+     * Key prefix for the fingerprints of the proto files of import roots other than the proto source root,
+     * followed by the coordinates of the dependency the import root belongs to, or its path relative to the
+     * project base directory. The command line refers to these keys instead of the import roots.
+     */
+    static final String PROTO_PATH_PREFIX = "proto-path:";
+
+    /**
+     * Key prefix for files generated by {@code protoc}. The value lists the source files
+     * the generated file was produced from, or is empty if it cannot be attributed to specific sources.
+     */
+    static final String OUTPUT_PREFIX = "output:";
+
+    /**
+     * Key for the identity of the {@code protoc} executable.
+     */
+    static final String PROTOC_KEY = "protoc";
+
+    /**
+     * Key for the {@code protoc} command line, excluding the list of compiled files.
+     */
+    static final String COMMAND_KEY = "command";
+
+    private static final String COMMENT = "protoc build manifest, do not edit";
+
+    private final SortedMap<String, String> entries = new TreeMap<>();
+
+    /**
+     * Reads a manifest from the specified file.
+     *
+     * @param file manifest file.
+     * @return the manifest, or {@code null} if the file does not exist or cannot be read.
+     */
+    static ProtocBuildManifest read(final File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        try (final InputStream in = Files.newInputStream(file.toPath())) {
+            properties.load(in);
+        } catch (final IOException e) {
+            return null;
+        }
+        final ProtocBuildManifest manifest = new ProtocBuildManifest();
+        for (final String key : properties.stringPropertyNames()) {
+            manifest.put(key, properties.getProperty(key));
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes this manifest into the specified file, replacing the previous version atomically where supported.
+     *
+     * @param file manifest file.
+     */
+    void write(final File file) {
+        final Properties properties = new Properties();
+        properties.putAll(entries);
+        writeProperties(properties, file, COMMENT);
+    }
+
+    /**
+     * Writes properties into the specified file, replacing the previous version atomically where supported,
+     * so that an interrupted build never leaves a truncated file behind.
+     *
+     * @param properties the properties to write.
+     * @param file target file.
+     * @param comment header comment.
+     */
+    static void writeProperties(final Properties properties, final File file, final String comment) {
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            final File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try (final OutputStream out = Files.newOutputStream(tempFile.toPath())) {
+                properties.store(out, comment);
+            }
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), REPLACE_EXISTING);
+            }
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to write " + file, e);
+        }
+    }
+
+    ProtocBuildManifest put(final String key, final String value) {
+        entries.put(key, value);
+        return this;
+    }
+
+    String get(final String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Returns all entries whose key starts with the specified prefix, with the prefix stripped from the keys.
+     *
+     * @param prefix key prefix.
+     * @return a sorted map of matching entries.
+     */
+    SortedMap<String, String> getEntries(final String prefix) {
+        final SortedMap<String, String> result = new TreeMap<>();
+        for (final Map.Entry<String, String> entry : entries.tailMap(prefix).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            result.put(entry.getKey().substring(prefix.length()), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Records the generated files.
+     *
+     * @param outputFiles files found in the output directory after a successful run.
+     */
+    void putOutputFiles(final Iterable<File> outputFiles) {
+        for (final File outputFile : outputFiles) {
+            putOutputFile(outputFile, null);
+        }
+    }
+
+    /**
+     * Records a generated file along with the source files it was produced from.
+     *
+     * @param outputFile a generated file.
+     * @param sourceFiles the source files, or {@code null} if unknown.
+     */
+    void putOutputFile(final File outputFile, final Collection<File> sourceFiles) {
+        final List<String> sourcePaths = new ArrayList<>();
+        if (sourceFiles != null) {
+            for (final File sourceFile : sourceFiles) {
+                sourcePaths.add(sourceFile.getAbsolutePath());
+            }
+        }
+        put(OUTPUT_PREFIX + outputFile.getAbsolutePath(), String.join(File.pathSeparator, sourcePaths));
+    }
+
+    /**
+     * Returns the generated files recorded in this manifest along with the source files they were produced from.
+     *
+     * @return a map of generated files to their source files; a {@code null} value means the sources are unknown.
+     */
+    Map<File, Set<File>> getOutputSources() {
+        final Map<File, Set<File>> outputSources = new LinkedHashMap<>();
+        for (final Map.Entry<String, String> entry : getEntries(OUTPUT_PREFIX).entrySet()) {
+            Set<File> sourceFiles = null;
+            if (!entry.getValue().isEmpty()) {
+                sourceFiles = new LinkedHashSet<>();
+                for (final String sourcePath : entry.getValue().split(File.pathSeparator)) {
+                    sourceFiles.add(new File(sourcePath));
+                }
+            }
+            outputSources.put(new File(entry.getKey()), sourceFiles);
+        }
+        return outputSources;
+    }
+
+    /**
+     * Records the names of the files imported by a source file.
+     *
+     * @param sourceFile a compiled {@code .proto} file.
+     * @param imports names of the imported files.
+     */
+    void putImports(final File sourceFile, final Collection<String> imports) {
+        put(IMPORT_PREFIX + sourceFile.getAbsolutePath(), String.join(",", imports));
+    }
+
+    /**
+     * Returns the names of the files imported by each source file.
+     *
+     * @return a map of source files to the names of the files they import.
+     */
+    Map<File, List<String>> getImports() {
+        final Map<File, List<String>> imports = new LinkedHashMap<>();
+        for (final Map.Entry<String, String> entry : getEntries(IMPORT_PREFIX).entrySet()) {
+            final List<String> names = entry.getValue().isEmpty()
+                    ? Collections.<String>emptyList()
+                    : asList(entry.getValue().split(","));
+            imports.put(new File(entry.getKey()), names);
+        }
+        return imports;
+    }
+
+    /**
+     * Returns the SHA-256 hashes of the source files recorded in this manifest.
+     *
+     * @return a map of source files to their hashes.
+     */
+    Map<File, String> getSourceHashes() {
+        final Map<File, String> hashes = new LinkedHashMap<>();
+        for (final Map.Entry<String, String> entry : getEntries(SOURCE_PREFIX).entrySet()) {
+            hashes.put(new File(entry.getKey()), entry.getValue());
+        }
+        return hashes;
+    }
+
+    /**
+     * Returns the generated files recorded in this manifest.
+     *
+     * @return a list of generated files.
+     */
+    List<File> getOutputFiles() {
+        final List<File> outputFiles = new ArrayList<>();
+        for (final String path : getEntries(OUTPUT_PREFIX).keySet()) {
+            outputFiles.add(new File(path));
+        }
+        return outputFiles;
+    }
+
+    /**
+     * Returns all input entries, i.e. everything except the generated files.
+     *
+     * @return a sorted map of input entries.
+     */
+    SortedMap<String, String> getInputEntries() {
+        final SortedMap<String, String> inputs = new TreeMap<>(entries);
+        inputs.keySet().removeIf(key -> key.startsWith(OUTPUT_PREFIX));
+        return Collections.unmodifiableSortedMap(inputs);
+    }
+
+    /**
+     * Returns the input entries that describe the {@code protoc} configuration,
+     * i.e. everything except the generated files, the source files and their imports.
+     *
+     * @return a sorted map of configuration entries.
+     */
+    SortedMap<String, String> getConfigurationEntries() {
+        final SortedMap<String, String> configuration = new TreeMap<>(getInputEntries());
+        configuration.keySet().removeIf(key -> key.startsWith(SOURCE_PREFIX) || key.startsWith(IMPORT_PREFIX));
+        return configuration;
+    }
+
+    /**
+     * Checks whether the compilation described by this manifest has already been performed,
+     * i.e. the previous manifest has exactly the same inputs and all of its generated files still exist.
+     *
+     * @param previous the manifest of the last successful run, may be {@code null}.
+     * @return {@code true} if no recompilation is needed.
+     */
+    boolean isUpToDate(final ProtocBuildManifest previous) {
+        if (previous == null || !getInputEntries().equals(previous.getInputEntries())) {
+            return false;
+        }
+        for (final File outputFile : previous.getOutputFiles()) {
+            if (!outputFile.isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Describes why the compilation described by this manifest differs from the previous one,
+     * in the order {@link #isUpToDate(ProtocBuildManifest)} would find the differences.
+     *
+     * @param previous the manifest of the last successful run, may be {@code null}.
+     * @param protoPathElements the import roots referred to by {@link #PROTO_PATH_PREFIX} keys, by key.
+     * @return human-readable reasons for recompiling, empty if the compilation is up to date.
+     */
+    List<String> explainChanges(final ProtocBuildManifest previous, final Map<String, File> protoPathElements) {
+        final List<String> reasons = new ArrayList<>();
+        if (previous == null) {
+            reasons.add("there is no build manifest of a previous successful run");
+            return reasons;
+        }
+        final SortedMap<String, String> inputs = getInputEntries();
+        final SortedMap<String, String> previousInputs = previous.getInputEntries();
+        final Set<String> keys = new TreeSet<>(inputs.keySet());
+        keys.addAll(previousInputs.keySet());
+        for (final String key : keys) {
+            final String value = inputs.get(key);
+            final String previousValue = previousInputs.get(key);
+            if (value == null || !value.equals(previousValue)) {
+                reasons.add(explainChange(key, previousValue, value, protoPathElements.get(key)));
+            }
+        }
+        for (final File outputFile : previous.getOutputFiles()) {
+            if (!outputFile.isFile()) {
+                reasons.add("generated file " + outputFile + " is missing");
+            }
+        }
+        return reasons;
+    }
+
+    private static String explainChange(
+            final String key,
+            final String previousValue,
+            final String value,
+            final File protoPathElement
+    ) {
+        final String change = previousValue == null ? "added" : value == null ? "removed" : "changed";
+        if (key.startsWith(SOURCE_PREFIX)) {
+            return "source " + key.substring(SOURCE_PREFIX.length()) + " " + change;
+        } else if (key.startsWith(IMPORT_PREFIX)) {
+            return "imports of " + key.substring(IMPORT_PREFIX.length()) + " " + change
+                    + ": [" + previousValue + "] -> [" + value + "]";
+        } else if (key.startsWith(PROTO_PATH_PREFIX)) {
+            return "definitions on proto path element " + key.substring(PROTO_PATH_PREFIX.length())
+                    + (protoPathElement != null ? " (" + protoPathElement + ")" : "") + " " + change;
+        } else if (key.startsWith(DESCRIPTOR_SET_PREFIX)) {
+            return "descriptor set " + key.substring(DESCRIPTOR_SET_PREFIX.length()) + " " + change;
+        } else if (key.startsWith(PLUGIN_PREFIX)) {
+            return "definition of plugin " + key.substring(PLUGIN_PREFIX.length()) + " " + change;
+        } else if (PROTOC_KEY.equals(key)) {
+            return "protoc executable " + change + ": " + previousValue + " -> " + value;
+        } else if (COMMAND_KEY.equals(key) && previousValue != null && value != null) {
+            final List<String> options = asList(value.split("\n"));
+            final List<String> previousOptions = asList(previousValue.split("\n"));
+            final StringBuilder diff = new StringBuilder("protoc command line changed:");
+            for (final String option : previousOptions) {
+                if (!options.contains(option)) {
+                    diff.append("\n  - ").append(option);
+                }
+            }
+            for (final String option : options) {
+                if (!previousOptions.contains(option)) {
+                    diff.append("\n  + ").append(option);
+                }
+            }
+            if (diff.indexOf("\n") < 0) {
+                diff.append(" options have been reordered");
+            }
+            return diff.toString();
+        }
+        return key + " " + change;
+    }
+
+    /**
+     * Computes a SHA-256 hash of the specified content.
+     *
+     * @param content the bytes to hash.
+     * @return hexadecimal hash string.
+     */
+    static String sha256(final byte[] content) {
+        return AbstractProtocMojo.toHexString(newSha256Digest().digest(content));
+    }
+
+    /**
+     * Computes a SHA-256 hash of the specified file's content.
+     *
+     * @param file the file to hash.
+     * @return hexadecimal hash string.
+     */
+    static String sha256(final File file) {
+        final MessageDigest digest = newSha256Digest();
+        final byte[] buffer = new byte[8192];
+        try (final InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (final IOException e) {
+            throw new MojoInitializationException("Unable to read " + file.getAbsolutePath(), e);
+        }
+        return AbstractProtocMojo.toHexString(digest.digest());
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new MojoInitializationException("Unable to create SHA-256 digest", e);
+        }
+    }
+}
@@ -100,10 +100,8 @@ public final class ProtocCompileDescriptorSetMojo extends AbstractProtocCompileM
     @Override
     protected void addProtocBuilderParameters(final Protoc.Builder protocBuilder) {
         super.addProtocBuilderParameters(protocBuilder);
-        final File descriptorSetFile = new File(getOutputDirectory(), descriptorSetFileName);
-        getLog().info("Will generate descriptor set:");
-        getLog().info(" " + descriptorSetFile.getAbsolutePath());
-        protocBuilder.withDescriptorSetFile(descriptorSetFile, includeImports, includeSourceInfo);
+        addDescriptorSetParameters(protocBuilder, new File(getOutputDirectory(), descriptorSetFileName),
+                includeImports, includeSourceInfo);
     }
 
     @Override
@@ -111,6 +109,12 @@ public final class ProtocCompileDescriptorSetMojo extends AbstractProtocCompileM
         return outputDirectory;
     }
 
+    @Override
+    protected boolean supportsIncrementalCompilation() {
+        // A descriptor set is a single output produced from all compiled definitions
+        return false;
+    }
+
     @SuppressWarnings("MethodDoesntCallSuperMethod")
     @Override
     protected void doAttachGeneratedFiles() {
@@ -119,6 +123,6 @@ public final class ProtocCompileDescriptorSetMojo extends AbstractProtocCompileM
             final File descriptorSetFile = new File(getOutputDirectory(), descriptorSetFileName);
             projectHelper.attachArtifact(project, "pb", classifier, descriptorSetFile);
         }
-        buildContext.refresh(outputDirectory);
+        refreshGeneratedFiles(outputDirectory);
     }
 }
@@ -0,0 +1,426 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+
+/**
+ * This mojo compiles the main {@code .proto} definitions with several generators at once,
+ * e.g. to Java and C++ sources and a descriptor set. The sources are scanned, the dependency
+ * definitions are extracted and {@code protoc} parses the definitions only once for all generators,
+ * whereas separate executions of the {@code compile}, {@code compile-cpp}, {@code compile-python},
+ * {@code compile-csharp}, {@code compile-js}, {@code compile-custom} and {@code compile-descriptor-set}
+ * goals would each do all of that again.
+ *
+ * <p>The output directories default to those of the individual goals, and the generated files
+ * are added to the project the same way.</p>
+ *
+ * @since 2.2.0
+ */
+@Mojo(
+        name = "generate-all",
+        defaultPhase = LifecyclePhase.GENERATE_SOURCES,
+        requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true
+)
+public final class ProtocGenerateAllMojo extends AbstractProtocCompileMojo {
+
+    private static final String JAVA = "java";
+
+    private static final String CPP = "cpp";
+
+    private static final String PYTHON = "python";
+
+    private static final String CSHARP = "csharp";
+
+    private static final String JAVA_SCRIPT = "js";
+
+    private static final String CUSTOM = "custom";
+
+    private static final String DESCRIPTOR_SET = "descriptor-set";
+
+    private static final List<String> GENERATORS =
+            asList(JAVA, CPP, PYTHON, CSHARP, JAVA_SCRIPT, CUSTOM, DESCRIPTOR_SET);
+
+    /**
+     * The generators to run, any of {@code java}, {@code cpp}, {@code python}, {@code csharp}, {@code js},
+     * {@code custom} and {@code descriptor-set}. The {@code custom} generator runs the native plugin
+     * configured by {@link #pluginId}.
+     */
+    @Parameter(
+            required = true,
+            property = "protoc.generators"
+    )
+    private String[] generators;
+
+    /**
+     * This is the directory into which the {@code .java} will be created.
+     */
+    @Parameter(
+            required = true,
+            property = "javaOutputDirectory",
+            defaultValue = "${project.build.directory}/generated-sources/protobuf/java"
+    )
+    private File javaOutputDirectory;
+
+    /**
+     * Additional comma-separated options to be passed to the Java generator.
+     * <b>Cannot</b> contain colon (<tt>:</tt>) symbols.
+     */
+    @Parameter(
+            required = false,
+            property = "javaOptions"
+    )
+    private String javaOptions;
+
+    /**
+     * This is the directory into which the C++ sources will be created.
+     */
+    @Parameter(
+            required = true,
+            property = "cppOutputDirectory",
+            defaultValue = "${project.build.directory}/generated-sources/protobuf/cpp"
+    )
+    private File cppOutputDirectory;
+
+    /**
+     * This is the directory into which the Python sources will be created.
+     */
+    @Parameter(
+            required = true,
+            property = "pythonOutputDirectory",
+            defaultValue = "${project.build.directory}/generated-sources/protobuf/python"
+    )
+    private File pythonOutputDirectory;
+
+    /**
+     * This is the directory into which the C# sources will be created.
+     */
+    @Parameter(
+            required = true,
+            property = "csharpOutputDirectory",
+            defaultValue = "${project.build.directory}/generated-sources/protobuf/csharp"
+    )
+    private File csharpOutputDirectory;
+
+    /**
+     * This is the directory into which the JavaScript sources will be created.
+     */
+    @Parameter(
+            required = true,
+            property = "javaScriptOutputDirectory",
+            defaultValue = "${project.build.directory}/generated-sources/protobuf/js"
+    )
+    private File javaScriptOutputDirectory;
+
+    /**
+     * Additional comma-separated options to be passed to the JavaScript generator.
+     * <b>Cannot</b> contain colon (<tt>:</tt>) symbols.
+     */
+    @Parameter(
+            required = false,
+            property = "javaScriptOptions"
+    )
+    private String javaScriptOptions;
+
+    /**
+     * A unique id that identifies the native plugin of the {@code custom} generator to protoc.
+     * <strong>Cannot</strong> be one of the built-in protoc plugins.
+     */
+    @Parameter(
+            required = false,
+            property = "protocPluginId"
+    )
+    private String pluginId;
+
+    /**
+     * This is the base directory for the generated code.
+     * If an explicit {@link #customOutputDirectory} parameter is not specified,
+     * an output directory named after {@link #pluginId} will be created
+     * inside this base directory.
+     */
+    @Parameter(
+            required = true,
+            readonly = true,
+            defaultValue = "${project.build.directory}/generated-sources/protobuf"
+    )
+    private File outputBaseDirectory;
+
+    /**
+     * This is the directory where the code generated by the native plugin will be placed.
+     * If this parameter is unspecified, then the default location is constructed as follows:<br>
+     * <code>${project.build.directory}/generated-sources/protobuf/&lt;pluginId&gt;</code>
+     */
+    @Parameter(
+            required = false,
+            property = "protocPluginOutputDirectory"
+    )
+    private File customOutputDirectory;
+
+    /**
+     * An optional path to the native plugin executable.
+     * If unspecified, alternative options must be used (e.g. toolchains).
+     */
+    @Parameter(
+            required = false,
+            property = "protocPluginExecutable"
+    )
+    private String pluginExecutable;
+
+    /**
+     * An optional parameter to be passed to the native plugin.
+     * <b>Cannot</b> contain colon (<tt>:</tt>) symbols.
+     */
+    @Parameter(
+            required = false,
+            property = "protocPluginParameter"
+    )
+    private String pluginParameter;
+
+    /**
+     * An optional parameter to be passed to the native plugin.
+     * When this parameter is set, the provided args will be appended to the protoc command.
+     */
+    @Parameter(
+            required = false,
+            property = "protocExtraArgs"
+    )
+    private String extraArgs;
+
+    /**
+     * A name of an optional custom toolchain that can be used to locate the native plugin executable.
+     * The toolchain must be registered as a build extension and initialised properly.
+     */
+    @Parameter(
+            required = false,
+            property = "protocPluginToolchain"
+    )
+    private String pluginToolchain;
+
+    /**
+     * If {@link #pluginToolchain} is specified, this parameter specifies the tool in the toolchain,
+     * which is to be resolved as plugin executable.
+     */
+    @Parameter(
+            required = false,
+            property = "protocPluginTool"
+    )
+    private String pluginTool;
+
+    /**
+     * Native plugin artifact specification, in {@code groupId:artifactId:version[:type[:classifier]]} format.
+     * When this parameter is set, the specified artifact will be resolved as a plugin executable.
+     */
+    @Parameter(
+            required = false,
+            property = "protocPluginArtifact"
+    )
+    private String pluginArtifact;
+
+    /**
+     * This is the directory into which the descriptor set file will be created.
+     */
+    @Parameter(
+            required = true,
+            property = "descriptorSetOutputDirectory",
+            defaultValue = "${project.build.directory}/generated-resources/protobuf/descriptor-sets"
+    )
+    private File descriptorSetOutputDirectory;
+
+    /**
+     * The descriptor set file name.
+     */
+    @Parameter(
+            required = true,
+            defaultValue = "${project.build.finalName}.pb"
+    )
+    private String descriptorSetFileName;
+
+    /**
+     * If set to {@code true}, the generated descriptor set will be attached to the build.
+     */
+    @Parameter(
+            required = true,
+            defaultValue = "false"
+    )
+    private boolean attachDescriptorSet;
+
+    /**
+     * If generated descriptor set is to be attached to the build, specifies an optional classifier.
+     */
+    @Parameter(
+            required = false
+    )
+    private String descriptorSetClassifier;
+
+    /**
+     * If {@code true}, the compiler will include all dependencies in the descriptor set, making it self-contained.
+     */
+    @Parameter(
+            required = false,
+            defaultValue = "false"
+    )
+    private boolean includeImports;
+
+    /**
+     * If {@code true}, do not strip {@code SourceCodeInfo} from the {@code FileDescriptorProto}.
+     * This results in significantly larger descriptors that include information about the original location
+     * of each declaration in the source file, as well as surrounding comments.
+     */
+    @Parameter(
+            required = false,
+            defaultValue = "false"
+    )
+    private boolean includeSourceInfo;
+
+    @Override
+    protected void checkParameters() {
+        if (generators == null || generators.length == 0) {
+            throw new MojoConfigurationException("'generators' is empty");
+        }
+        for (final String generator : generators) {
+            if (!GENERATORS.contains(generator)) {
+                throw new MojoConfigurationException(
+                        "Unknown generator '" + generator + "', expected one of " + GENERATORS);
+            }
+        }
+        if (isGenerated(CUSTOM) && pluginId == null) {
+            throw new MojoConfigurationException("'pluginId' is required by the custom generator");
+        }
+        super.checkParameters();
+    }
+
+    @Override
+    protected void addProtocBuilderParameters(final Protoc.Builder protocBuilder) {
+        super.addProtocBuilderParameters(protocBuilder);
+        if (isGenerated(JAVA)) {
+            if (javaOptions != null) {
+                protocBuilder.setJavaOutputParameter(javaOptions);
+            }
+            protocBuilder.setJavaOutputDirectory(javaOutputDirectory);
+        }
+        if (isGenerated(CPP)) {
+            protocBuilder.setCppOutputDirectory(cppOutputDirectory);
+        }
+        if (isGenerated(PYTHON)) {
+            protocBuilder.setPythonOutputDirectory(pythonOutputDirectory);
+        }
+        if (isGenerated(CSHARP)) {
+            protocBuilder.setCsharpOutputDirectory(csharpOutputDirectory);
+        }
+        if (isGenerated(JAVA_SCRIPT)) {
+            if (javaScriptOptions != null) {
+                protocBuilder.setJavaScriptOutputParameter(javaScriptOptions);
+            }
+            protocBuilder.setJavaScriptOutputDirectory(javaScriptOutputDirectory);
+        }
+        if (isGenerated(CUSTOM)) {
+            pluginExecutable =
+                    resolveNativePluginExecutable(pluginExecutable, pluginToolchain, pluginTool, pluginArtifact);
+            addNativePluginParameters(protocBuilder, pluginId, pluginExecutable, pluginParameter, extraArgs,
+                    getCustomOutputDirectory());
+        }
+        if (isGenerated(DESCRIPTOR_SET)) {
+            addDescriptorSetParameters(protocBuilder, new File(descriptorSetOutputDirectory, descriptorSetFileName),
+                    includeImports, includeSourceInfo);
+        }
+    }
+
+    @Override
+    protected boolean supportsIncrementalCompilation() {
+        // A descriptor set is a single output produced from all compiled definitions
+        return !isGenerated(DESCRIPTOR_SET);
+    }
+
+    @Override
+    protected void doAttachGeneratedFiles() {
+        for (final String generator : GENERATORS) {
+            if (!isGenerated(generator)) {
+                continue;
+            }
+            final File outputDirectory = getOutputDirectory(generator);
+            if (generator.equals(DESCRIPTOR_SET)) {
+                if (attachDescriptorSet) {
+                    final File descriptorSetFile = new File(outputDirectory, descriptorSetFileName);
+                    projectHelper.attachArtifact(project, "pb", descriptorSetClassifier, descriptorSetFile);
+                }
+            } else {
+                project.addCompileSourceRoot(outputDirectory.getAbsolutePath());
+            }
+            refreshGeneratedFiles(outputDirectory);
+        }
+    }
+
+    /**
+     * Returns the output directory of the first configured generator.
+     */
+    @Override
+    protected File getOutputDirectory() {
+        return getOutputDirectories().get(0);
+    }
+
+    @Override
+    protected List<File> getOutputDirectories() {
+        final List<File> outputDirectories = new ArrayList<>();
+        for (final String generator : GENERATORS) {
+            if (isGenerated(generator)) {
+                outputDirectories.add(getOutputDirectory(generator));
+            }
+        }
+        return outputDirectories;
+    }
+
+    private File getOutputDirectory(final String generator) {
+        switch (generator) {
+            case JAVA:
+                return javaOutputDirectory;
+            case CPP:
+                return cppOutputDirectory;
+            case PYTHON:
+                return pythonOutputDirectory;
+            case CSHARP:
+                return csharpOutputDirectory;
+            case JAVA_SCRIPT:
+                return javaScriptOutputDirectory;
+            case CUSTOM:
+                return getCustomOutputDirectory();
+            default:
+                return descriptorSetOutputDirectory;
+        }
+    }
+
+    private File getCustomOutputDirectory() {
+        File outputDirectory = this.customOutputDirectory;
+        if (outputDirectory == null) {
+            outputDirectory = new File(outputBaseDirectory, pluginId);
+        }
+        return outputDirectory;
+    }
+
+    private boolean isGenerated(final String generator) {
+        return asList(generators).contains(generator);
+    }
+}
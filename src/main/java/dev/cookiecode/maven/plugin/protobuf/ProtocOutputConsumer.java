@@ -0,0 +1,210 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Consumes an output stream of {@code protoc} line by line: each line is logged as soon as it is read,
+ * and diagnostics in the {@code file:line:column: message} format are parsed, so that they can be reported
+ * on the files they refer to.
+ *
+ * <p>Only the first lines and diagnostics are retained, so that a flood of warnings from a large
+ * compilation neither exhausts the heap nor buries the relevant messages.</p>
+ *
+ * @since 2.2.0
+ */
+final class ProtocOutputConsumer implements StreamConsumer {
+
+    /**
+     * The maximum number of lines, and of diagnostics, retained from a stream.
+     */
+    static final int MAX_RETAINED_LINES = 200;
+
+    private static final String LOG_PREFIX = "PROTOC: ";
+
+    private static final Pattern DIAGNOSTIC_PATTERN =
+            Pattern.compile("^(.+?\\.proto):(\\d+):(\\d+):\\s*(.*)$");
+
+    private static final Pattern WARNING_PATTERN = Pattern.compile("^warning:\\s*", Pattern.CASE_INSENSITIVE);
+
+    private final Log log;
+
+    private final boolean errorStream;
+
+    private final List<String> lines = new ArrayList<>();
+
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+    private int droppedLineCount;
+
+    /**
+     * Creates a consumer.
+     *
+     * @param log the log to write the lines to.
+     * @param errorStream {@code true} for the error stream of {@code protoc}, whose lines are logged as warnings,
+     *                    except for error diagnostics, {@code false} for its standard output,
+     *                    whose lines are logged as information.
+     */
+    ProtocOutputConsumer(final Log log, final boolean errorStream) {
+        this.log = log;
+        this.errorStream = errorStream;
+    }
+
+    @Override
+    public synchronized void consumeLine(final String rawLine) {
+        final String line = fixUnicodeOutput(rawLine);
+        if (line.trim().isEmpty()) {
+            return;
+        }
+        Diagnostic diagnostic = null;
+        if (errorStream) {
+            final Matcher matcher = DIAGNOSTIC_PATTERN.matcher(line);
+            if (matcher.matches()) {
+                final Matcher warningMatcher = WARNING_PATTERN.matcher(matcher.group(4));
+                final boolean warning = warningMatcher.lookingAt();
+                diagnostic = new Diagnostic(
+                        matcher.group(1),
+                        parsePosition(matcher.group(2)),
+                        parsePosition(matcher.group(3)),
+                        warning ? matcher.group(4).substring(warningMatcher.end()) : matcher.group(4),
+                        warning);
+            }
+        }
+
+        if (!errorStream) {
+            log.info(LOG_PREFIX + line);
+        } else if (diagnostic != null && !diagnostic.isWarning()) {
+            log.error(LOG_PREFIX + line);
+        } else {
+            log.warn(LOG_PREFIX + line);
+        }
+
+        if (lines.size() < MAX_RETAINED_LINES) {
+            lines.add(line);
+        } else {
+            droppedLineCount++;
+        }
+        if (diagnostic != null && diagnostics.size() < MAX_RETAINED_LINES) {
+            diagnostics.add(diagnostic);
+        }
+    }
+
+    /**
+     * Returns the retained lines, followed by the number of lines that have not been retained, if any.
+     *
+     * @return the retained output.
+     */
+    synchronized String getOutput() {
+        final StringBuilder output = new StringBuilder();
+        for (final String line : lines) {
+            output.append(line).append(System.lineSeparator());
+        }
+        if (droppedLineCount > 0) {
+            output.append("... ").append(droppedLineCount).append(" more line(s)").append(System.lineSeparator());
+        }
+        return output.toString();
+    }
+
+    /**
+     * Returns the retained diagnostics, in the order {@code protoc} reported them.
+     *
+     * @return the parsed diagnostics.
+     */
+    synchronized List<Diagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(new ArrayList<>(diagnostics));
+    }
+
+    private static int parsePosition(final String position) {
+        try {
+            return Integer.parseInt(position);
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Transcodes a line from system default charset to UTF-8.
+     * Protoc emits messages in UTF-8, but they are read with the system-default encoding.
+     *
+     * @param line a UTF-8 line in system-default encoding.
+     * @return the same line converted into a unicode string.
+     */
+    private static String fixUnicodeOutput(final String line) {
+        return new String(line.getBytes(), UTF_8);
+    }
+
+    /**
+     * A message reported by {@code protoc} about a position in a {@code .proto} file.
+     */
+    static final class Diagnostic {
+
+        private final String fileName;
+
+        private final int line;
+
+        private final int column;
+
+        private final String message;
+
+        private final boolean warning;
+
+        Diagnostic(final String fileName, final int line, final int column, final String message,
+                   final boolean warning) {
+            this.fileName = fileName;
+            this.line = line;
+            this.column = column;
+            this.message = message;
+            this.warning = warning;
+        }
+
+        /**
+         * Returns the name of the file as reported by {@code protoc}, which is either its import name
+         * or the path it was passed with.
+         *
+         * @return the file name.
+         */
+        String getFileName() {
+            return fileName;
+        }
+
+        int getLine() {
+            return line;
+        }
+
+        int getColumn() {
+            return column;
+        }
+
+        String getMessage() {
+            return message;
+        }
+
+        boolean isWarning() {
+            return warning;
+        }
+    }
+}
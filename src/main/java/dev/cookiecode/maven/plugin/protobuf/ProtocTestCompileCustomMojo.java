@@ -16,12 +16,10 @@ package dev.cookiecode.maven.plugin.protobuf;
  * limitations under the License.
  */
 
-import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
-import org.apache.maven.toolchain.Toolchain;
 
 import java.io.File;
 
@@ -141,40 +139,12 @@ public final class ProtocTestCompileCustomMojo extends AbstractProtocTestCompile
     protected void addProtocBuilderParameters(final Protoc.Builder protocBuilder) {
         super.addProtocBuilderParameters(protocBuilder);
 
-        protocBuilder.setNativePluginId(pluginId);
-        if (pluginToolchain != null && pluginTool != null) {
-            //get toolchain from context
-            final Toolchain tc = toolchainManager.getToolchainFromBuildContext(pluginToolchain, session);
-            if (tc != null) {
-                getLog().info("Toolchain in protobuf-maven-plugin: " + tc);
-                //when the executable to use is explicitly set by user in mojo's parameter, ignore toolchains.
-                if (pluginExecutable != null) {
-                    getLog().warn("Toolchains are ignored, 'pluginExecutable' parameter is set to " + pluginExecutable);
-                } else {
-                    //assign the path to executable from toolchains
-                    pluginExecutable = tc.findTool(pluginTool);
-                }
-            }
-        }
-        if (pluginExecutable == null && pluginArtifact != null) {
-            final Artifact artifact = createDependencyArtifact(pluginArtifact);
-            final File file = resolveBinaryArtifact(artifact);
-            pluginExecutable = file.getAbsolutePath();
-        }
-        if (pluginExecutable != null) {
-            protocBuilder.setNativePluginExecutable(pluginExecutable);
-        }
-        if (pluginParameter != null) {
-            protocBuilder.setNativePluginParameter(pluginParameter);
-        }
-        protocBuilder.setCustomOutputDirectory(getOutputDirectory());
+        pluginExecutable = resolveNativePluginExecutable(pluginExecutable, pluginToolchain, pluginTool, pluginArtifact);
+        addNativePluginParameters(protocBuilder, pluginId, pluginExecutable, pluginParameter, null,
+                getOutputDirectory());
 
-        // We need to add project output directory to the protobuf import paths,
-        // in case test protobuf definitions extend or depend on production ones
-        final File buildOutputDirectory = new File(project.getBuild().getOutputDirectory());
-        if (buildOutputDirectory.exists()) {
-            protocBuilder.addProtoPathElement(buildOutputDirectory);
-        }
+        // test definitions may extend or depend on production ones
+        addMainProtoPathElements(protocBuilder);
     }
 
     @Override
@@ -101,16 +101,10 @@ public final class ProtocTestCompileDescriptorSetMojo extends AbstractProtocTest
     @Override
     protected void addProtocBuilderParameters(final Protoc.Builder protocBuilder) {
         super.addProtocBuilderParameters(protocBuilder);
-        final File descriptorSetFile = new File(getOutputDirectory(), descriptorSetFileName);
-        getLog().info("Will generate descriptor set:");
-        getLog().info(" " + descriptorSetFile.getAbsolutePath());
-        protocBuilder.withDescriptorSetFile(descriptorSetFile, includeImports, includeSourceInfo);
-        // We need to add project output directory to the protobuf import paths,
-        // in case test protobuf definitions extend or depend on production ones
-        final File buildOutputDirectory = new File(project.getBuild().getOutputDirectory());
-        if (buildOutputDirectory.exists()) {
-            protocBuilder.addProtoPathElement(buildOutputDirectory);
-        }
+        addDescriptorSetParameters(protocBuilder, new File(getOutputDirectory(), descriptorSetFileName),
+                includeImports, includeSourceInfo);
+        // test definitions may extend or depend on production ones
+        addMainProtoPathElements(protocBuilder);
     }
 
     @Override
@@ -118,6 +112,12 @@ public final class ProtocTestCompileDescriptorSetMojo extends AbstractProtocTest
         return outputDirectory;
     }
 
+    @Override
+    protected boolean supportsIncrementalCompilation() {
+        // A descriptor set is a single output produced from all compiled definitions
+        return false;
+    }
+
     @SuppressWarnings("MethodDoesntCallSuperMethod")
     @Override
     protected void doAttachGeneratedFiles() {
@@ -126,6 +126,6 @@ public final class ProtocTestCompileDescriptorSetMojo extends AbstractProtocTest
             final File descriptorSetFile = new File(getOutputDirectory(), descriptorSetFileName);
             projectHelper.attachArtifact(project, "test-pb", classifier, descriptorSetFile);
         }
-        buildContext.refresh(outputDirectory);
+        refreshGeneratedFiles(outputDirectory);
     }
 }
@@ -69,12 +69,8 @@ public final class ProtocTestCompileMojo extends AbstractProtocTestCompileMojo {
             protocBuilder.setNativePluginParameter(javaOptions);
         }
         protocBuilder.setJavaOutputDirectory(getOutputDirectory());
-        // We need to add project output directory to the protobuf import paths,
-        // in case test protobuf definitions extend or depend on production ones
-        final File buildOutputDirectory = new File(project.getBuild().getOutputDirectory());
-        if (buildOutputDirectory.exists()) {
-            protocBuilder.addProtoPathElement(buildOutputDirectory);
-        }
+        // test definitions may extend or depend on production ones
+        addMainProtoPathElements(protocBuilder);
     }
 
     @Override
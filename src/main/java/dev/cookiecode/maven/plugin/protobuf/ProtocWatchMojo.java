@@ -0,0 +1,276 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.String.format;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * This mojo compiles the main {@code .proto} definitions to Java sources, like the {@code compile} goal,
+ * and then keeps watching the proto source roots and the additional proto path elements for changes,
+ * until the build is interrupted or the {@code watchTimeout} expires.
+ *
+ * <p>Dependency definitions are extracted, and the {@code protoc} executable and plugins are set up,
+ * only once. Each change to the proto source roots recompiles only the changed files and the files
+ * affected by them; a change to the additional proto path elements recompiles all files, since
+ * the files importing them are not tracked.</p>
+ *
+ * <p>This goal is meant to be run from the command line during development, with
+ * {@code mvn protobuf:watch}, and is not bound to any lifecycle phase.</p>
+ *
+ * @since 2.2.0
+ */
+@Mojo(
+        name = "watch",
+        requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true
+)
+public final class ProtocWatchMojo extends AbstractProtocCompileMojo {
+
+    /**
+     * This is the directory into which the {@code .java} will be created.
+     */
+    @Parameter(
+            required = true,
+            property = "javaOutputDirectory",
+            defaultValue = "${project.build.directory}/generated-sources/protobuf/java"
+    )
+    private File outputDirectory;
+
+    /**
+     * Additional comma-separated options to be passed to the Java generator.
+     * <b>Cannot</b> contain colon (<tt>:</tt>) symbols.
+     */
+    @Parameter(
+            required = false,
+            property = "javaOptions"
+    )
+    private String javaOptions;
+
+    /**
+     * Time in milliseconds to wait for further changes after a change is detected, before recompiling.
+     * Editors often write a file in several steps, which are compiled together this way.
+     */
+    @Parameter(
+            required = false,
+            property = "protoc.watch.quietPeriod",
+            defaultValue = "100"
+    )
+    private long watchQuietPeriod;
+
+    /**
+     * Time in milliseconds after which watching stops and the goal completes, for example to run a bounded
+     * development session from a script. By default, the goal watches until the build is interrupted.
+     */
+    @Parameter(
+            required = false,
+            property = "protoc.watch.timeout",
+            defaultValue = "0"
+    )
+    private long watchTimeout;
+
+    /**
+     * The watched directories, by their watch keys.
+     */
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skipMojo()) {
+            return;
+        }
+        compile();
+
+        final List<Path> protoSourceRoots = new ArrayList<>();
+        for (final File protoSourceRoot : getProtoSourceRootDirectories()) {
+            protoSourceRoots.add(protoSourceRoot.getAbsoluteFile().toPath());
+        }
+        try (final WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            for (final Path protoSourceRoot : protoSourceRoots) {
+                watchDirectoryTree(watchService, protoSourceRoot, null);
+            }
+            for (final File protoPathElement : getAdditionalProtoPathElements()) {
+                watchDirectoryTree(watchService, protoPathElement.getAbsoluteFile().toPath(), null);
+            }
+            getLog().info(format("Watching %d director(y/ies) for changes, press Ctrl+C to stop",
+                    watchedDirectories.size()));
+
+            final long deadline = watchTimeout > 0 ? System.currentTimeMillis() + watchTimeout : 0;
+            while (true) {
+                final Set<File> changedFiles = new HashSet<>();
+                boolean fullRecompilation = false;
+                WatchKey key = deadline == 0 ? watchService.take()
+                        : watchService.poll(deadline - System.currentTimeMillis(), MILLISECONDS);
+                if (key == null) {
+                    getLog().info(format("Stopped watching after %d ms", watchTimeout));
+                    return;
+                }
+                // collect the events until no more arrive within the quiet period
+                while (key != null) {
+                    final Path directory = watchedDirectories.get(key);
+                    for (final WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            fullRecompilation = true;
+                            continue;
+                        }
+                        final Path path = directory.resolve((Path) event.context());
+                        final boolean belowSourceRoot = isBelowAny(path, protoSourceRoots);
+                        if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                            // files may have been created in the new directory before it was watched
+                            watchDirectoryTree(watchService, path, belowSourceRoot ? changedFiles : null);
+                        }
+                        if (belowSourceRoot) {
+                            changedFiles.add(path.toFile());
+                        } else {
+                            fullRecompilation = true;
+                        }
+                    }
+                    if (!key.reset()) {
+                        watchedDirectories.remove(key);
+                    }
+                    key = watchService.poll(watchQuietPeriod, MILLISECONDS);
+                }
+                if (fullRecompilation) {
+                    // without a previous manifest, everything is compiled again
+                    FileUtils.fileDelete(getBuildManifestFile().getAbsolutePath());
+                    setChangedProtoFiles(null);
+                } else {
+                    setChangedProtoFiles(changedFiles);
+                }
+                compile();
+            }
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Unable to watch for changes: " + e.getMessage(), e);
+        } catch (final InterruptedException e) {
+            getLog().info("Process interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs a compilation, reporting failures without ending the watch.
+     */
+    private void compile() {
+        final long startTime = System.currentTimeMillis();
+        try {
+            super.execute();
+            getLog().info(format("Compilation finished in %d ms", System.currentTimeMillis() - startTime));
+        } catch (final MojoExecutionException | MojoFailureException e) {
+            getLog().error(e.getMessage());
+        }
+    }
+
+    private static boolean isBelowAny(final Path path, final List<Path> directories) {
+        for (final Path directory : directories) {
+            if (path.startsWith(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Watches a directory and its subdirectories.
+     *
+     * @param watchService the watch service.
+     * @param root the directory to watch.
+     * @param existingFiles collects the files found in the directory tree, may be {@code null}.
+     * @throws IOException if a directory cannot be watched.
+     */
+    private void watchDirectoryTree(final WatchService watchService, final Path root, final Set<File> existingFiles)
+            throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path directory, final BasicFileAttributes attributes)
+                    throws IOException {
+                watchedDirectories.put(
+                        directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), directory);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+                if (existingFiles != null) {
+                    existingFiles.add(file.toFile());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Override
+    protected boolean isIncrementalCompilation() {
+        return true;
+    }
+
+    @Override
+    protected boolean isWarmStateRetained() {
+        return true;
+    }
+
+    @Override
+    protected void doAttachFiles() {
+        // nothing is packaged while watching, only the IDE needs to know about the generated files
+        doAttachGeneratedFiles();
+    }
+
+    @Override
+    protected void addProtocBuilderParameters(final Protoc.Builder protocBuilder) {
+        super.addProtocBuilderParameters(protocBuilder);
+        if (javaOptions != null) {
+            protocBuilder.setNativePluginParameter(javaOptions);
+        }
+        protocBuilder.setJavaOutputDirectory(getOutputDirectory());
+    }
+
+    @Override
+    protected File getOutputDirectory() {
+        return outputDirectory;
+    }
+}
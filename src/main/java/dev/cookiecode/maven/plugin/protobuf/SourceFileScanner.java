@@ -0,0 +1,182 @@
+package dev.cookiecode.maven.plugin.protobuf;
+
+/*
+ * Copyright (c) 2019 Maven Protocol Buffers Plugin Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.codehaus.plexus.util.AbstractScanner;
+import org.codehaus.plexus.util.SelectorUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the files of a directory tree that match Ant-style include and exclude patterns, with the same
+ * semantics as {@link org.codehaus.plexus.util.FileUtils#getFiles(File, String, String)}, including the
+ * default excludes of version control metadata.
+ *
+ * <p>Unlike the plexus scanner, subtrees that cannot contain any included file, or whose content is
+ * entirely excluded, are not visited at all, and subdirectories are scanned in parallel on the common
+ * fork-join pool. The files are returned in the natural order of their paths.</p>
+ *
+ * @since 2.2.0
+ */
+final class SourceFileScanner {
+
+    private static final String ALL_FILES_SUFFIX = File.separator + "**";
+
+    private final String[] includes;
+
+    private final String[] excludes;
+
+    /**
+     * Creates a scanner.
+     *
+     * @param includes patterns of the files to find, relative to the scanned directory.
+     * @param excludes patterns of the files to leave out, in addition to the default excludes.
+     */
+    SourceFileScanner(final String[] includes, final String[] excludes) {
+        this.includes = normalizePatterns(includes);
+        final List<String> allExcludes = new ArrayList<>();
+        Collections.addAll(allExcludes, excludes);
+        Collections.addAll(allExcludes, AbstractScanner.DEFAULTEXCLUDES);
+        this.excludes = normalizePatterns(allExcludes.toArray(new String[0]));
+    }
+
+    /**
+     * Finds the matching files of a directory tree.
+     *
+     * @param directory the root of the directory tree.
+     * @return the matching files, sorted by path.
+     * @throws MojoInitializationException if the directory tree cannot be read.
+     */
+    List<File> scan(final File directory) {
+        final List<Path> paths;
+        try {
+            paths = ForkJoinPool.commonPool().invoke(new ScanTask(directory.toPath(), ""));
+        } catch (final UncheckedIOException e) {
+            throw new MojoInitializationException("Unable to retrieve the list of files: " + e.getMessage(), e);
+        }
+        Collections.sort(paths);
+        return paths.stream().map(Path::toFile).collect(Collectors.toList());
+    }
+
+    private boolean isIncluded(final String name) {
+        return matchesAny(includes, name) && !matchesAny(excludes, name);
+    }
+
+    /**
+     * Tells whether a directory needs to be visited.
+     *
+     * @param name the path of the directory, relative to the scanned directory.
+     * @return {@code false} if no file of the directory can be included.
+     */
+    private boolean isVisited(final String name) {
+        boolean couldHoldIncluded = false;
+        for (final String include : includes) {
+            if (SelectorUtils.matchPatternStart(include, name, true)) {
+                couldHoldIncluded = true;
+                break;
+            }
+        }
+        if (!couldHoldIncluded) {
+            return false;
+        }
+        for (final String exclude : excludes) {
+            if (exclude.endsWith(ALL_FILES_SUFFIX) && SelectorUtils.matchPath(
+                    exclude.substring(0, exclude.length() - ALL_FILES_SUFFIX.length()), name, true)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesAny(final String[] patterns, final String name) {
+        for (final String pattern : patterns) {
+            if (SelectorUtils.matchPath(pattern, name, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Normalizes patterns the way {@link org.codehaus.plexus.util.DirectoryScanner} does:
+     * separators are replaced by the platform separator, and a trailing separator matches
+     * everything below a directory.
+     */
+    private static String[] normalizePatterns(final String[] patterns) {
+        final String[] normalizedPatterns = new String[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            String pattern = patterns[i].trim().replace('/', File.separatorChar).replace('\\', File.separatorChar);
+            if (pattern.endsWith(File.separator)) {
+                pattern += "**";
+            }
+            normalizedPatterns[i] = pattern;
+        }
+        return normalizedPatterns;
+    }
+
+    /**
+     * Scans a single directory, and forks a task for each of its subdirectories.
+     */
+    private final class ScanTask extends RecursiveTask<List<Path>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path directory;
+
+        private final String name;
+
+        private ScanTask(final Path directory, final String name) {
+            this.directory = directory;
+            this.name = name;
+        }
+
+        @Override
+        protected List<Path> compute() {
+            final List<Path> files = new ArrayList<>();
+            final List<ScanTask> subtasks = new ArrayList<>();
+            try (final DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (final Path entry : entries) {
+                    final String entryName = name + entry.getFileName();
+                    if (Files.isDirectory(entry)) {
+                        if (isVisited(entryName)) {
+                            subtasks.add(new ScanTask(entry, entryName + File.separator));
+                        }
+                    } else if (isIncluded(entryName) && Files.isRegularFile(entry)) {
+                        files.add(entry);
+                    }
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (final ScanTask subtask : invokeAll(subtasks)) {
+                files.addAll(subtask.join());
+            }
+            return files;
+        }
+    }
+}